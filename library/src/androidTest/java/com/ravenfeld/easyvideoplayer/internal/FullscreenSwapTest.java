@@ -0,0 +1,189 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.app.Instrumentation;
+import android.net.Uri;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoCallback;
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayer;
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+import com.ravenfeld.easyvideoplayer.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Enters and exits fullscreen on a playing player and measures the swap gap, the time between the
+ * texture leaving a window and its first draw in the other. The engine must keep playing
+ * throughout, without a pause, a seek or a new prepare. The gaps are logged under this class name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FullscreenSwapTest {
+
+    private static final String TAG = "FullscreenSwapTest";
+    private static final Uri SOURCE = Uri.parse("file:///sdcard/Movies/clip.mp4");
+    private static final long TIMEOUT_MS = 5000;
+    // A frame or two on a device, the margin is for the emulators
+    private static final long MAX_SWAP_GAP_MS = 500;
+
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+    private final FakePlaybackEngine.Factory mFactory = new FakePlaybackEngine.Factory();
+    private final RecordingCallback mCallback = new RecordingCallback();
+    private ActivityScenario<PlayerTestActivity> mScenario;
+    private PlayerView mView;
+    private FakePlaybackEngine mEngine;
+    private int mEngineCount;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(mFactory);
+        mScenario = ActivityScenario.launch(PlayerTestActivity.class);
+        mScenario.onActivity(new ActivityScenario.ActivityAction<PlayerTestActivity>() {
+            @Override
+            public void perform(PlayerTestActivity activity) {
+                EasyVideoPlayer player = activity.getPlayer();
+                player.setCallback(mCallback);
+                player.setAutoPlay(true);
+                player.setSource(SOURCE);
+            }
+        });
+        mEngine = awaitPreparingEngine();
+        // The pipeline results posted to the main thread
+        mInstrumentation.waitForIdleSync();
+        mScenario.onActivity(new ActivityScenario.ActivityAction<PlayerTestActivity>() {
+            @Override
+            public void perform(PlayerTestActivity activity) {
+                mEngine.finishPrepare();
+                mView = findPlayerView(activity.getPlayer());
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        assertNotNull(mView);
+        assertTrue(mEngine.isPlaying());
+        mEngineCount = mFactory.getCreatedCount();
+    }
+
+    @After
+    public void tearDown() {
+        mScenario.close();
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(null);
+    }
+
+    @Test
+    public void swapKeepsPlayingWithinTheGap() throws InterruptedException {
+        long enterGap = swap();
+        assertTrue(mView.isVideoOnly());
+        assertStillPlaying();
+
+        long exitGap = swap();
+        assertFalse(mView.isVideoOnly());
+        assertStillPlaying();
+
+        Log.i(TAG, "swap gap: enter " + enterGap + "ms, exit " + exitGap + "ms");
+        assertTrue("enter gap " + enterGap + "ms", enterGap >= 0 && enterGap <= MAX_SWAP_GAP_MS);
+        assertTrue("exit gap " + exitGap + "ms", exitGap >= 0 && exitGap <= MAX_SWAP_GAP_MS);
+    }
+
+    /**
+     * Clicks the fullscreen button and waits for the texture to be drawn in the other window.
+     *
+     * @return the swap gap in milliseconds
+     */
+    private long swap() throws InterruptedException {
+        final boolean[] started = new boolean[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mView.showControls();
+                mView.findViewById(R.id.btnFullScreen).performClick();
+                started[0] = mView.isSurfaceTransitionActive();
+            }
+        });
+        assertTrue("The surface was not kept for the swap", started[0]);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (isSwapping()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The texture was not drawn after the swap");
+            }
+            Thread.sleep(5);
+        }
+        mInstrumentation.waitForIdleSync();
+        return mView.getSurfaceSwapGapMs();
+    }
+
+    private boolean isSwapping() {
+        final boolean[] swapping = new boolean[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                swapping[0] = mView.isSurfaceTransitionActive();
+            }
+        });
+        return swapping[0];
+    }
+
+    private void assertStillPlaying() {
+        assertTrue(mEngine.isPlaying());
+        assertEquals(0, mEngine.getPauseCount());
+        assertEquals(0, mEngine.getSeekCount());
+        assertEquals(1, mEngine.getPrepareCount());
+        assertEquals(mEngineCount, mFactory.getCreatedCount());
+        assertEquals(0, mCallback.mPaused);
+    }
+
+    @NonNull
+    private FakePlaybackEngine awaitPreparingEngine() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mFactory.getCreatedCount() == 0 || mFactory.last().getState() != FakePlaybackEngine.PREPARING) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The prepare was not dispatched");
+            }
+            Thread.sleep(5);
+        }
+        return mFactory.last();
+    }
+
+    @Nullable
+    private static PlayerView findPlayerView(@NonNull View view) {
+        if (view instanceof PlayerView) {
+            return (PlayerView) view;
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                PlayerView player = findPlayerView(group.getChildAt(i));
+                if (player != null) {
+                    return player;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class RecordingCallback extends EasyVideoCallback {
+
+        private int mPaused;
+
+        @Override
+        public void onPaused(PlayerView player) {
+            mPaused++;
+        }
+    }
+}
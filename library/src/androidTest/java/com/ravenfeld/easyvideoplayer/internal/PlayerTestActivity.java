@@ -0,0 +1,34 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.Bundle;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.view.ViewCompat;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayer;
+
+/**
+ * Hosts an EasyVideoPlayer in its content, as an app would, for the instrumented tests. The player
+ * needs an id for the fragments it adds.
+ */
+public class PlayerTestActivity extends AppCompatActivity {
+
+    private EasyVideoPlayer mPlayer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        FrameLayout root = new FrameLayout(this);
+        mPlayer = new EasyVideoPlayer(this);
+        mPlayer.setId(ViewCompat.generateViewId());
+        root.addView(mPlayer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        setContentView(root);
+    }
+
+    public EasyVideoPlayer getPlayer() {
+        return mPlayer;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ravenfeld.easyvideoplayer.R;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cost of a PlayerView until its overlays are needed, as in a list binding new players. Run on a
+ * device with ./gradlew :library:connectedCheck, the results are in the instrumentation output.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayerViewConstructionBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 608;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new ContextThemeWrapper(ApplicationProvider.<Context>getApplicationContext(),
+                R.style.Theme_AppCompat_Light);
+        // The engines come from a warm pool, as in a running app
+        MediaPlayerPool.get().prewarm(2);
+    }
+
+    @Test
+    @UiThreadTest
+    public void construct() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            PlayerView view = new PlayerView(mContext);
+            state.pauseTiming();
+            view.release();
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void constructAndLayOut() {
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            PlayerView view = new PlayerView(mContext);
+            view.measure(widthSpec, heightSpec);
+            view.layout(0, 0, WIDTH, HEIGHT);
+            state.pauseTiming();
+            view.release();
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * The overlays stay stubs until first shown: the player only holds its texture, its click
+     * frame and the four stubs.
+     */
+    @Test
+    @UiThreadTest
+    public void newPlayerInflatesNoOverlay() {
+        PlayerView view = new PlayerView(mContext);
+        try {
+            assertEquals(7, countViews(view));
+            assertEquals(4, countStubs(view));
+        } finally {
+            view.release();
+        }
+    }
+
+    private static int countViews(@NonNull View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    private static int countStubs(@NonNull ViewGroup group) {
+        int count = 0;
+        for (int i = 0; i < group.getChildCount(); i++) {
+            if (group.getChildAt(i) instanceof ViewStub) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
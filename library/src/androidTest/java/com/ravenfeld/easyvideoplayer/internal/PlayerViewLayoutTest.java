@@ -0,0 +1,140 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ravenfeld.easyvideoplayer.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Counts the measure passes and layout requests of a PlayerView, which must not ask for another
+ * layout from its own measure nor when only the texture transform changes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayerViewLayoutTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 608;
+
+    private FrameLayout mParent;
+    private CountingPlayerView mView;
+
+    @Before
+    public void setUp() {
+        Context context = new ContextThemeWrapper(ApplicationProvider.<Context>getApplicationContext(),
+                R.style.Theme_AppCompat_Light);
+        mParent = new FrameLayout(context);
+        mView = new CountingPlayerView(context);
+        mParent.addView(mView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    @After
+    public void tearDown() {
+        mView.release();
+    }
+
+    @Test
+    @UiThreadTest
+    public void measureDoesNotRequestAnotherLayout() {
+        layoutPass(View.MeasureSpec.EXACTLY);
+        mView.resetCounts();
+
+        mView.forceLayout();
+        mParent.forceLayout();
+        layoutPass(View.MeasureSpec.EXACTLY);
+
+        assertEquals(1, mView.mMeasures);
+        assertEquals(1, mView.mLayouts);
+        assertEquals(0, mView.mLayoutRequests);
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    @Test
+    @UiThreadTest
+    public void scaleModeOnAFixedSizeOnlyChangesTheTransform() {
+        layoutPass(View.MeasureSpec.EXACTLY);
+        mView.resetCounts();
+
+        mView.setScaleMode(PlayerView.SCALE_MODE_CROP);
+        mView.setVideoSizeLoading(4f / 3f);
+
+        assertEquals(0, mView.mLayoutRequests);
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    @Test
+    @UiThreadTest
+    public void newAspectOnAWrappedPlayerLaysOutOnce() {
+        layoutPass(View.MeasureSpec.AT_MOST);
+        mView.resetCounts();
+
+        mView.setVideoSizeLoading(4f / 3f);
+        assertEquals(1, mView.mLayoutRequests);
+        layoutPass(View.MeasureSpec.AT_MOST);
+        mView.setVideoSizeLoading(4f / 3f);
+
+        assertEquals(1, mView.mMeasures);
+        assertEquals(1, mView.mLayoutRequests);
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    /**
+     * Measures and lays the parent out as a window would, the player height being bounded by
+     * {@code heightMode}.
+     */
+    private void layoutPass(int heightMode) {
+        mParent.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, heightMode));
+        mParent.layout(0, 0, mParent.getMeasuredWidth(), mParent.getMeasuredHeight());
+    }
+
+    private static class CountingPlayerView extends PlayerView {
+
+        private int mMeasures;
+        private int mLayouts;
+        private int mLayoutRequests;
+
+        CountingPlayerView(Context context) {
+            super(context);
+        }
+
+        void resetCounts() {
+            mMeasures = 0;
+            mLayouts = 0;
+            mLayoutRequests = 0;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mMeasures++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mLayouts++;
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+        @Override
+        public void requestLayout() {
+            mLayoutRequests++;
+            super.requestLayout();
+        }
+    }
+}
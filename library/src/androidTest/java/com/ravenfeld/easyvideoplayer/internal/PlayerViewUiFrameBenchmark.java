@@ -0,0 +1,118 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.net.Uri;
+import android.view.ContextThemeWrapper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+import com.ravenfeld.easyvideoplayer.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The controls frame of a playing PlayerView, its labels, seek bar and progress callback, against
+ * a {@link FakePlaybackEngine}. BenchmarkRule reports the time and the allocations per frame, the
+ * ops/s being the inverse of the time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayerViewUiFrameBenchmark {
+
+    private static final Uri SOURCE = Uri.parse("file:///sdcard/Movies/clip.mp4");
+    private static final long TIMEOUT_MS = 5000;
+    // A frame at 60 Hz
+    private static final int FRAME_MS = 16;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+    private final FakePlaybackEngine.Factory mFactory = new FakePlaybackEngine.Factory();
+    private PlayerView mView;
+    private FakePlaybackEngine mEngine;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(mFactory);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = new ContextThemeWrapper(ApplicationProvider.<Context>getApplicationContext(),
+                        R.style.Theme_AppCompat_Light);
+                mView = new PlayerView(context);
+                mView.setSource(SOURCE);
+                mView.onSurfaceTextureAvailable(new SurfaceTexture(0), 1080, 608);
+            }
+        });
+        mEngine = mFactory.last();
+        mEngine.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // The pipeline results posted to the main thread
+        mInstrumentation.waitForIdleSync();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.finishPrepare();
+                mView.showControls();
+                mView.start();
+            }
+        });
+        assertTrue(mEngine.isPlaying());
+    }
+
+    @After
+    public void tearDown() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mView.release();
+            }
+        });
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(null);
+    }
+
+    /**
+     * One frame of playback, the labels only change once a second.
+     */
+    @Test
+    public void uiFrame() {
+        runFrames(FRAME_MS);
+    }
+
+    /**
+     * Every frame a second further, both labels are formatted again each time.
+     */
+    @Test
+    public void uiFrameNewSecond() {
+        runFrames(1000);
+    }
+
+    private void runFrames(final int stepMs) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                BenchmarkState state = mBenchmarkRule.getState();
+                int position = 0;
+                while (state.keepRunning()) {
+                    position = (position + stepMs) % 60000;
+                    mEngine.setPosition(position);
+                    mView.onUiFrame();
+                }
+            }
+        });
+    }
+}
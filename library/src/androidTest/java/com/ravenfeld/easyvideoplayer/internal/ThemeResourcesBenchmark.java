@@ -0,0 +1,110 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import androidx.appcompat.content.res.AppCompatResources;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ravenfeld.easyvideoplayer.R;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Per player theme lookups with and without the {@link ThemeResources} shared by the players of a
+ * theme. The uncached runs still hit the drawable caches of the framework, only the theme
+ * resolution and the drawable loading around them differ.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThemeResourcesBenchmark {
+
+    private static final int[] DRAWABLES = {R.drawable.evp_action_restart, R.drawable.evp_action_play,
+            R.drawable.evp_action_pause, R.drawable.ic_fullscreen, R.drawable.ic_fullscreen_exit};
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = newThemedContext();
+        MediaPlayerPool.get().prewarm(2);
+    }
+
+    /**
+     * What a player resolves from its theme, once another player of the theme did.
+     */
+    @Test
+    @UiThreadTest
+    public void resolveShared() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            ThemeResources.resolveColor(mContext, R.attr.colorPrimary);
+            ThemeResources.resolveDrawable(mContext, R.attr.selectableItemBackground);
+            for (int res : DRAWABLES) {
+                ThemeResources.getDrawable(mContext, res);
+            }
+        }
+    }
+
+    /**
+     * The same lookups made by each player on its own.
+     */
+    @Test
+    @UiThreadTest
+    public void resolveUncached() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            Util.resolveColor(mContext, R.attr.colorPrimary);
+            Util.resolveDrawable(mContext, R.attr.selectableItemBackground);
+            for (int res : DRAWABLES) {
+                AppCompatResources.getDrawable(mContext, res);
+            }
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void constructOnSharedTheme() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            PlayerView view = new PlayerView(mContext);
+            state.pauseTiming();
+            view.release();
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * Every player on a theme of its own, so that nothing is shared.
+     */
+    @Test
+    @UiThreadTest
+    public void constructOnNewTheme() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            Context context = newThemedContext();
+            // The theme itself is created lazily, not part of what is measured
+            context.getTheme();
+            state.resumeTiming();
+            PlayerView view = new PlayerView(context);
+            state.pauseTiming();
+            view.release();
+            state.resumeTiming();
+        }
+    }
+
+    private static Context newThemedContext() {
+        return new ContextThemeWrapper(ApplicationProvider.<Context>getApplicationContext(),
+                R.style.Theme_AppCompat_Light);
+    }
+}
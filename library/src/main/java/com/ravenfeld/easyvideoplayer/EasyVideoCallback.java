@@ -2,6 +2,7 @@ package com.ravenfeld.easyvideoplayer;
 
 import android.net.Uri;
 
+import com.ravenfeld.easyvideoplayer.internal.CacheCoverage;
 import com.ravenfeld.easyvideoplayer.internal.PlayerView;
 
 public abstract class EasyVideoCallback {
@@ -50,8 +51,22 @@ public abstract class EasyVideoCallback {
 
     }
 
+    /**
+     * Called when the player moves on to the next queued source.
+     */
+    public void onQueueAdvanced(PlayerView player, Uri source) {
+
+    }
+
     public void onVideoProgressUpdate(PlayerView player, int position, int duration) {
 
     }
 
+    /**
+     * Called when the http cache holds new bytes of the source, only when the cache is enabled.
+     */
+    public void onCacheCoverageUpdate(PlayerView player, CacheCoverage coverage) {
+
+    }
+
 }
\ No newline at end of file
@@ -20,15 +20,22 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.appcompat.content.res.AppCompatResources;
 import androidx.core.content.ContextCompat;
 
 import com.ravenfeld.easyvideoplayer.internal.EasyVideoFragment;
 import com.ravenfeld.easyvideoplayer.internal.FragmentCallback;
+import com.ravenfeld.easyvideoplayer.internal.PlayerEventLog;
+import com.ravenfeld.easyvideoplayer.internal.PlayerTrace;
 import com.ravenfeld.easyvideoplayer.internal.PlayerView;
-import com.ravenfeld.easyvideoplayer.internal.Util;
+import com.ravenfeld.easyvideoplayer.internal.PrefetchManager;
+import com.ravenfeld.easyvideoplayer.internal.ProgressListener;
+import com.ravenfeld.easyvideoplayer.internal.ThemeResources;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IUserMethods {
 
@@ -54,12 +61,18 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
     private boolean mAutoPlay;
     private boolean mControlsDisabled;
     private boolean mSeekBarEnabled;
+    private boolean mScrubPreviewEnabled;
+    private boolean mAudioOnly;
     private int mThemeColor;
     private boolean mAutoRotateInFullscreen;
     private float mVideoSizeLoading;
+    @PlayerView.ScaleMode
+    private int mScaleMode;
     private int mInitialPosition = 0;
     private boolean mIsVideoOnly = false;
     private PlayerView playerView;
+    private final Map<ProgressListener, Integer> mProgressListeners = new LinkedHashMap<>();
+    private final List<Uri> mQueue = new ArrayList<>();
 
     public EasyVideoPlayer(Context context) {
         this(context, null);
@@ -100,34 +113,37 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
                 int fullscreenExitDrawableResId = a.getResourceId(R.styleable.EasyVideoPlayer_fullscreenExitDrawable, -1);
 
                 if (restartDrawableResId != -1) {
-                    mRestartDrawable = AppCompatResources.getDrawable(context, restartDrawableResId);
+                    mRestartDrawable = ThemeResources.getDrawable(context, restartDrawableResId);
                 }
                 if (playDrawableResId != -1) {
-                    mPlayDrawable = AppCompatResources.getDrawable(context, playDrawableResId);
+                    mPlayDrawable = ThemeResources.getDrawable(context, playDrawableResId);
                 }
                 if (pauseDrawableResId != -1) {
-                    mPauseDrawable = AppCompatResources.getDrawable(context, pauseDrawableResId);
+                    mPauseDrawable = ThemeResources.getDrawable(context, pauseDrawableResId);
                 }
                 if (fullscreenDrawableResId != -1) {
-                    mFullScreenDrawable = AppCompatResources.getDrawable(context, fullscreenDrawableResId);
+                    mFullScreenDrawable = ThemeResources.getDrawable(context, fullscreenDrawableResId);
                 }
                 if (fullscreenExitDrawableResId != -1) {
-                    mFullScreenExitDrawable = AppCompatResources.getDrawable(context, fullscreenExitDrawableResId);
+                    mFullScreenExitDrawable = ThemeResources.getDrawable(context, fullscreenExitDrawableResId);
                 }
 
                 mHideControlsOnPlay = a.getBoolean(R.styleable.EasyVideoPlayer_hideControlsOnPlay, true);
                 mAutoPlay = a.getBoolean(R.styleable.EasyVideoPlayer_autoPlay, false);
                 mControlsDisabled = a.getBoolean(R.styleable.EasyVideoPlayer_disableControls, false);
                 mSeekBarEnabled = a.getBoolean(R.styleable.EasyVideoPlayer_enableSeekBar, true);
+                mScrubPreviewEnabled = a.getBoolean(R.styleable.EasyVideoPlayer_scrubPreview, false);
+                mAudioOnly = a.getBoolean(R.styleable.EasyVideoPlayer_audioOnly, false);
 
                 mThemeColor = a.getColor(R.styleable.EasyVideoPlayer_themeColor,
-                        Util.resolveColor(context, R.attr.colorPrimary));
+                        ThemeResources.resolveColor(context, R.attr.colorPrimary));
 
                 mAutoRotateInFullscreen = a.getBoolean(R.styleable.EasyVideoPlayer_autoRotateInFullscreen, false);
 
                 mIsVideoOnly = a.getBoolean(R.styleable.EasyVideoPlayer_startFullscreen, false);
 
                 mVideoSizeLoading = a.getFloat(R.styleable.EasyVideoPlayer_videoSizeLoading, 16f / 10f);
+                mScaleMode = a.getInteger(R.styleable.EasyVideoPlayer_scaleMode, PlayerView.SCALE_MODE_FIT);
 
             } finally {
                 a.recycle();
@@ -138,7 +154,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
             mHideControlsOnPlay = true;
             mAutoPlay = false;
             mControlsDisabled = false;
-            mThemeColor = Util.resolveColor(context, R.attr.colorPrimary);
+            mThemeColor = ThemeResources.resolveColor(context, R.attr.colorPrimary);
             mAutoRotateInFullscreen = false;
             mIsVideoOnly = false;
         }
@@ -210,6 +226,11 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
         }
     }
 
+    @Nullable
+    public Uri getSource() {
+        return mSource;
+    }
+
     @Override
     public void setCallback(@NonNull EasyVideoCallback callback) {
         this.callback = new WeakReference<>(callback);
@@ -300,7 +321,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
 
     @Override
     public void setRestartDrawableRes(@DrawableRes int res) {
-        setRestartDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setRestartDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -313,7 +334,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
 
     @Override
     public void setPlayDrawableRes(@DrawableRes int res) {
-        setPlayDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPlayDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -326,7 +347,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
 
     @Override
     public void setPauseDrawableRes(@DrawableRes int res) {
-        setPauseDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPauseDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -339,7 +360,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
 
     @Override
     public void setFullScreenDrawableRes(@DrawableRes int res) {
-        setFullScreenDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setFullScreenDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -352,7 +373,7 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
 
     @Override
     public void setFullScreenExitDrawableRes(@DrawableRes int res) {
-        setFullScreenExitDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setFullScreenExitDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -449,6 +470,14 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
         }
     }
 
+    @Override
+    public void setScrubPreviewEnabled(boolean enabled) {
+        mScrubPreviewEnabled = enabled;
+        if (playerView != null) {
+            playerView.setScrubPreviewEnabled(mScrubPreviewEnabled);
+        }
+    }
+
     @Override
     public boolean isPrepared() {
         if (playerView != null) {
@@ -565,6 +594,41 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
         }
     }
 
+    /**
+     * Releases the engine of a paused player, keeping its source and position, until
+     * {@link #restoreEngine()} or {@link #start()} prepares it again.
+     *
+     * @return true if the engine was released
+     */
+    public boolean releaseEngine() {
+        return playerView != null && playerView.releaseEngine();
+    }
+
+    public void restoreEngine() {
+        if (playerView != null) {
+            playerView.restoreEngine();
+        }
+    }
+
+    /**
+     * Downloads the first {@code bytes} of an http/https source into the http cache in the
+     * background, so that a player later given this source starts from disk. Does nothing unless
+     * the cache is enabled with {@link EasyVideoPlayerConfig#enableHttpCache(Context, long)}.
+     *
+     * @return true if the prefetch was queued
+     */
+    public static boolean prefetch(@NonNull Uri source, long bytes) {
+        return PrefetchManager.get().prefetch(source, bytes);
+    }
+
+    public static void cancelPrefetch(@NonNull Uri source) {
+        PrefetchManager.get().cancel(source);
+    }
+
+    public static void cancelAllPrefetches() {
+        PrefetchManager.get().cancelAll();
+    }
+
     public void setAutoRotateInFullscreen(boolean autoFullScreen) {
         mAutoRotateInFullscreen = autoFullScreen;
     }
@@ -578,73 +642,148 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
     }
 
     @Override
-    public void onEnter(PlayerView player) {
-        if (EasyVideoPlayerConfig.isDebug()) {
-            Log.d(TAG, "onEnter");
+    public void setScaleMode(@PlayerView.ScaleMode int scaleMode) {
+        mScaleMode = scaleMode;
+        if (playerView != null) {
+            playerView.setScaleMode(mScaleMode);
         }
-        mIsVideoOnly = true;
-        mInitialPosition = getCurrentPosition() >= 0 ? getCurrentPosition() : mInitialPosition;
-        mAutoPlay = getCurrentPosition() >= 0 ? playerView.isWasPlaying() : mAutoPlay;
+    }
 
-        EasyVideoFragment fragmentFull;
+    @Override
+    public int getScaleMode() {
+        return mScaleMode;
+    }
+
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+        mAudioOnly = audioOnly;
+        if (playerView != null) {
+            playerView.setAudioOnly(mAudioOnly);
+        }
+    }
 
-        fragmentFull = EasyVideoFragment.newInstance(true, mAutoRotateInFullscreen);
+    @Override
+    public boolean isAudioOnly() {
+        return mAudioOnly;
+    }
 
-        fragmentFull.setPlayer(playerView);
-        if (callback != null && callback.get() != null) {
-            fragmentFull.setCallback(callback.get());
+    @Override
+    public void enqueue(@NonNull Uri source) {
+        mQueue.add(source);
+        if (playerView != null) {
+            playerView.enqueue(source);
         }
-        fragmentFull.setFragmentCallback(this);
+    }
 
-        fragmentFull.show(((AppCompatActivity) getContext()).getSupportFragmentManager(), TAG_FULLSCREEN + getId());
+    @Override
+    public void clearQueue() {
+        mQueue.clear();
+        if (playerView != null) {
+            playerView.clearQueue();
+        }
+    }
 
+    @Override
+    public boolean skipToNext() {
+        return playerView != null && playerView.skipToNext();
+    }
 
-        if (((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId()) != null) {
-            EasyVideoFragment fragmentMini = (EasyVideoFragment) ((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId());
-            player.pause();
-            fragmentMini.setPlayer(null);
+    @Override
+    public void addProgressListener(@NonNull ProgressListener listener, @IntRange(from = 1) int intervalMs) {
+        mProgressListeners.put(listener, intervalMs);
+        if (playerView != null) {
+            playerView.addProgressListener(listener, intervalMs);
         }
-        if (callback != null && callback.get() != null) {
-            callback.get().onFullScreen(player);
+    }
+
+    @Override
+    public void removeProgressListener(@NonNull ProgressListener listener) {
+        mProgressListeners.remove(listener);
+        if (playerView != null) {
+            playerView.removeProgressListener(listener);
         }
     }
 
     @Override
-    public void onExit(PlayerView player) {
+    public void onEnter(PlayerView player) {
         if (EasyVideoPlayerConfig.isDebug()) {
-            Log.d(TAG, "onExit");
+            Log.d(TAG, "onEnter");
         }
-        mIsVideoOnly = false;
-        mInitialPosition = getCurrentPosition() >= 0 ? getCurrentPosition() : mInitialPosition;
-        mAutoPlay = getCurrentPosition() >= 0 ? playerView.isWasPlaying() : mAutoPlay;
+        PlayerEventLog.record(player.hashCode(), PlayerEventLog.FULLSCREEN_ENTER);
+        PlayerTrace.beginSection(PlayerTrace.FULLSCREEN_ENTER);
+        try {
+            mIsVideoOnly = true;
+            mInitialPosition = getCurrentPosition() >= 0 ? getCurrentPosition() : mInitialPosition;
+            mAutoPlay = getCurrentPosition() >= 0 ? playerView.isWasPlaying() : mAutoPlay;
 
-        EasyVideoFragment fragment;
-        if (((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId()) != null) {
-            fragment = (EasyVideoFragment) ((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId());
+            EasyVideoFragment fragmentFull;
 
-            if (fragment.isDetached()) {
-                ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().attach(fragment).commitAllowingStateLoss();
-                fragment.setPlayer(player);
-            }
-            if (!fragment.isAdded()) {
-                ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().replace(getId(), fragment, TAG_CONTENT + getId()).commitAllowingStateLoss();
+            fragmentFull = EasyVideoFragment.newInstance(true, mAutoRotateInFullscreen);
+
+            fragmentFull.setPlayer(playerView);
+            if (callback != null && callback.get() != null) {
+                fragmentFull.setCallback(callback.get());
             }
+            fragmentFull.setFragmentCallback(this);
 
-        } else {
-            fragment = EasyVideoFragment.newInstance(false, mAutoRotateInFullscreen);
+            fragmentFull.show(((AppCompatActivity) getContext()).getSupportFragmentManager(), TAG_FULLSCREEN + getId());
 
-            ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().replace(getId(), fragment, TAG_CONTENT + getId()).commitAllowingStateLoss();
 
+            if (((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId()) != null) {
+                EasyVideoFragment fragmentMini = (EasyVideoFragment) ((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId());
+                // Playback goes on while the surface moves to the fullscreen window
+                fragmentMini.setPlayer(null);
+            }
+            if (callback != null && callback.get() != null) {
+                callback.get().onFullScreen(player);
+            }
+        } finally {
+            PlayerTrace.endSection();
         }
+    }
 
-        fragment.setPlayer(player);
-        if (callback != null && callback.get() != null) {
-            fragment.setCallback(callback.get());
+    @Override
+    public void onExit(PlayerView player) {
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, "onExit");
         }
-        fragment.setFragmentCallback(EasyVideoPlayer.this);
+        PlayerEventLog.record(player.hashCode(), PlayerEventLog.FULLSCREEN_EXIT);
+        PlayerTrace.beginSection(PlayerTrace.FULLSCREEN_EXIT);
+        try {
+            mIsVideoOnly = false;
+            mInitialPosition = getCurrentPosition() >= 0 ? getCurrentPosition() : mInitialPosition;
+            mAutoPlay = getCurrentPosition() >= 0 ? playerView.isWasPlaying() : mAutoPlay;
+
+            EasyVideoFragment fragment;
+            if (((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId()) != null) {
+                fragment = (EasyVideoFragment) ((AppCompatActivity) getContext()).getSupportFragmentManager().findFragmentByTag(TAG_CONTENT + getId());
+
+                if (fragment.isDetached()) {
+                    ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().attach(fragment).commitAllowingStateLoss();
+                    fragment.setPlayer(player);
+                }
+                if (!fragment.isAdded()) {
+                    ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().replace(getId(), fragment, TAG_CONTENT + getId()).commitAllowingStateLoss();
+                }
+
+            } else {
+                fragment = EasyVideoFragment.newInstance(false, mAutoRotateInFullscreen);
+
+                ((AppCompatActivity) getContext()).getSupportFragmentManager().beginTransaction().replace(getId(), fragment, TAG_CONTENT + getId()).commitAllowingStateLoss();
 
-        if (callback != null && callback.get() != null) {
-            callback.get().onFullScreenExit(player);
+            }
+
+            fragment.setPlayer(player);
+            if (callback != null && callback.get() != null) {
+                fragment.setCallback(callback.get());
+            }
+            fragment.setFragmentCallback(EasyVideoPlayer.this);
+
+            if (callback != null && callback.get() != null) {
+                callback.get().onFullScreenExit(player);
+            }
+        } finally {
+            PlayerTrace.endSection();
         }
     }
 
@@ -654,6 +793,8 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
             Log.d(TAG, "onCreatedView: " + mInitialPosition + " autoPlay " + mAutoPlay + " video only " + mIsVideoOnly + " source " + mSource);
         }
         playerView = player;
+        // Takes over the playback retained by the view destroyed on a configuration change
+        player.setSessionKey(getId());
         if (mSource != null) {
             player.setSource(mSource);
         }
@@ -695,9 +836,24 @@ public class EasyVideoPlayer extends FrameLayout implements FragmentCallback, IU
             player.enableControls(true);
         }
         player.setEnabledSeekBar(mSeekBarEnabled);
+        player.setScrubPreviewEnabled(mScrubPreviewEnabled);
         player.setThemeColor(mThemeColor);
         player.setVideoSizeLoading(mVideoSizeLoading);
+        player.setScaleMode(mScaleMode);
+        player.setAudioOnly(mAudioOnly);
+        player.setQueue(mQueue);
+        for (Map.Entry<ProgressListener, Integer> entry : mProgressListeners.entrySet()) {
+            player.addProgressListener(entry.getKey(), entry.getValue());
+        }
+    }
 
+    @Override
+    public void onQueueAdvanced(PlayerView player, Uri source) {
+        if (!mQueue.isEmpty()) {
+            mQueue.remove(0);
+        }
+        mSource = source;
+        mInitialPosition = 0;
     }
 
     @Override
@@ -1,7 +1,28 @@
 package com.ravenfeld.easyvideoplayer;
 
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.internal.BandwidthMeter;
+import com.ravenfeld.easyvideoplayer.internal.HttpCacheProxy;
+import com.ravenfeld.easyvideoplayer.internal.HttpCacheStats;
+import com.ravenfeld.easyvideoplayer.internal.MediaPlayerEngine;
+import com.ravenfeld.easyvideoplayer.internal.MediaPlayerPool;
+import com.ravenfeld.easyvideoplayer.internal.MediaPlayerPoolStats;
+import com.ravenfeld.easyvideoplayer.internal.PlaybackMetricsRecorder;
+import com.ravenfeld.easyvideoplayer.internal.PlayerEventLog;
+import com.ravenfeld.easyvideoplayer.internal.PlayerRegistry;
+import com.ravenfeld.easyvideoplayer.internal.PrefetchManager;
+
+import java.io.File;
+
 public class EasyVideoPlayerConfig {
+    private static final String CACHE_DIRECTORY = "easyvideoplayer";
     private static boolean isDebug = false;
+    private static volatile boolean isAdaptiveStreaming = true;
+    private static volatile PlaybackEngine.Factory playbackEngineFactory = MediaPlayerEngine.FACTORY;
 
     public static void setDebug(boolean debug) {
         isDebug = debug;
@@ -10,4 +31,133 @@ public class EasyVideoPlayerConfig {
     public static boolean isDebug() {
         return isDebug;
     }
+
+    /**
+     * Engine created by the players initialized afterwards, null restores the MediaPlayer one.
+     */
+    public static void setPlaybackEngineFactory(@Nullable PlaybackEngine.Factory factory) {
+        playbackEngineFactory = factory != null ? factory : MediaPlayerEngine.FACTORY;
+    }
+
+    @NonNull
+    public static PlaybackEngine.Factory getPlaybackEngineFactory() {
+        return playbackEngineFactory;
+    }
+
+    /**
+     * When enabled, the variant of an HLS master playlist (.m3u8) is chosen from the measured
+     * bandwidth before it is handed to the player. The bandwidth is measured on the download of
+     * the master playlist and, with {@link #enableHttpCache(Context, long)}, on every transfer of
+     * the players. Transfers under 32 KiB are not measured, so without the cache only large master
+     * playlists are. Until a transfer has been measured the master playlist is handed over as is
+     * and the player picks the variant. Enabled by default.
+     */
+    public static void setAdaptiveStreamingEnabled(boolean enabled) {
+        isAdaptiveStreaming = enabled;
+    }
+
+    public static boolean isAdaptiveStreamingEnabled() {
+        return isAdaptiveStreaming;
+    }
+
+    /**
+     * Download throughput measured on the http sources, in bits per second.
+     */
+    public static long getBandwidthEstimate() {
+        return BandwidthMeter.get().getEstimate();
+    }
+
+    /**
+     * Routes http/https sources through a local proxy that keeps the downloaded bytes in an
+     * on-disk LRU cache of at most {@code maxBytes}, in the application cache directory.
+     */
+    public static void enableHttpCache(@NonNull Context context, long maxBytes) {
+        enableHttpCache(new File(context.getCacheDir(), CACHE_DIRECTORY), maxBytes);
+    }
+
+    public static void enableHttpCache(@NonNull File directory, long maxBytes) {
+        HttpCacheProxy.install(directory, maxBytes);
+    }
+
+    public static void disableHttpCache() {
+        HttpCacheProxy.uninstall();
+    }
+
+    public static boolean isHttpCacheEnabled() {
+        return HttpCacheProxy.get() != null;
+    }
+
+    /**
+     * Removes every cached file not currently read by a player.
+     */
+    public static void clearHttpCache() {
+        HttpCacheProxy proxy = HttpCacheProxy.get();
+        if (proxy != null) {
+            proxy.clear();
+        }
+    }
+
+    @Nullable
+    public static HttpCacheStats getHttpCacheStats() {
+        HttpCacheProxy proxy = HttpCacheProxy.get();
+        return proxy != null ? proxy.getStats() : null;
+    }
+
+    /**
+     * Number of prefetches downloading at the same time, the others wait in line. Defaults to 2.
+     */
+    public static void setMaxConcurrentPrefetches(int maxConcurrent) {
+        PrefetchManager.get().setMaxConcurrent(maxConcurrent);
+    }
+
+    /**
+     * Number of idle MediaPlayer instances kept for reuse between views. Defaults to 2, 0 disables
+     * the pool.
+     */
+    public static void setMediaPlayerPoolSize(int size) {
+        MediaPlayerPool.get().setMaxIdle(size);
+    }
+
+    /**
+     * Creates idle MediaPlayer instances ahead of time, bounded by the pool size.
+     */
+    public static void prewarmMediaPlayers(int count) {
+        MediaPlayerPool.get().prewarm(count);
+    }
+
+    @NonNull
+    public static MediaPlayerPoolStats getMediaPlayerPoolStats() {
+        return MediaPlayerPool.get().getStats();
+    }
+
+    /**
+     * Releases what the players can spare at the ComponentCallbacks2 {@code level}. The players
+     * already follow the application onTrimMemory() calls, this is for pressure detected otherwise.
+     */
+    public static void trimMemory(int level) {
+        PlayerRegistry.trimMemory(level);
+    }
+
+    /**
+     * Registers {@code listener} for the playback metrics of every player, see
+     * {@link PlaybackMetricsAggregator} for an in-memory summary.
+     */
+    public static void addPlaybackMetricsListener(@NonNull PlaybackMetricsListener listener) {
+        PlaybackMetricsRecorder.addListener(listener);
+    }
+
+    public static void removePlaybackMetricsListener(@NonNull PlaybackMetricsListener listener) {
+        PlaybackMetricsRecorder.removeListener(listener);
+    }
+
+    /**
+     * Recent events of all the players, oldest first, recorded even when debug is off. Meant to be
+     * attached to crash reports.
+     */
+    @NonNull
+    public static String dumpPlayerEvents() {
+        StringBuilder out = new StringBuilder(PlayerEventLog.CAPACITY * 48);
+        PlayerEventLog.dump(out);
+        return out.toString();
+    }
 }
@@ -14,6 +14,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import com.ravenfeld.easyvideoplayer.internal.PlayerView;
+import com.ravenfeld.easyvideoplayer.internal.ProgressListener;
 
 public interface IUserMethods {
 
@@ -88,6 +89,8 @@ public interface IUserMethods {
 
     void setEnabledSeekBar(boolean enabled);
 
+    void setScrubPreviewEnabled(boolean enabled);
+
     @CheckResult
     boolean isPrepared();
 
@@ -122,5 +125,41 @@ public interface IUserMethods {
 
     void release();
 
+    /**
+     * Aspect ratio, width over height, assumed until the video size is known. When it is the one
+     * of the video, the first layout is already the final one.
+     */
     void setVideoSizeLoading(float videoSizeLoading);
+
+    void setScaleMode(@PlayerView.ScaleMode int scaleMode);
+
+    @PlayerView.ScaleMode
+    int getScaleMode();
+
+    /**
+     * Keeps playing the audio while the player is hidden or the app in background, with the video
+     * surface detached. The video shows again from the current position once visible.
+     */
+    void setAudioOnly(boolean audioOnly);
+
+    @CheckResult
+    boolean isAudioOnly();
+
+    /**
+     * Plays {@code source} once the current source and the ones queued before complete. The next
+     * source is prepared in the background while the current one plays, so that it starts
+     * without a gap.
+     */
+    void enqueue(@NonNull Uri source);
+
+    void clearQueue();
+
+    /**
+     * @return false if the queue is empty
+     */
+    boolean skipToNext();
+
+    void addProgressListener(@NonNull ProgressListener listener, @IntRange(from = 1) int intervalMs);
+
+    void removeProgressListener(@NonNull ProgressListener listener);
 }
\ No newline at end of file
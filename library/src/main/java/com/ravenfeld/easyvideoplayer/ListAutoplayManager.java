@@ -0,0 +1,315 @@
+package com.ravenfeld.easyvideoplayer;
+
+import android.net.Uri;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.FloatRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays the most visible of the players registered within a scrolling container, such as a
+ * RecyclerView or a ScrollView, and pauses the others. The visibility of every player is computed
+ * in a single pass, at most once per frame, after the container scrolled or was laid out.
+ * <p>
+ * A player starts once {@link #setPlayThreshold(float)} of it is visible and keeps playing until
+ * less than {@link #setPauseThreshold(float)} is, or until another player is both above the play
+ * threshold and more visible. The closest player not playing keeps its engine prepared, its source
+ * is also prefetched into the http cache when enabled with
+ * {@link EasyVideoPlayerConfig#enableHttpCache(android.content.Context, long)}. The players further
+ * than {@link #setReleaseDistance(float)} viewports release their engine, which is created and
+ * prepared again at their position once they get close.
+ * <p>
+ * While attached, the manager drives the auto play of the registered players, their own setting is
+ * restored on {@link #detach()} or {@link #unregister(EasyVideoPlayer)}. Must be used on the main
+ * thread.
+ */
+public class ListAutoplayManager {
+
+    private static final String TAG = "ListAutoplayManager";
+    private static final long PREFETCH_BYTES = 512 * 1024;
+
+    private final List<Entry> mEntries = new ArrayList<>();
+    private final int[] mLocation = new int[2];
+    private ViewGroup mContainer;
+    private Entry mCurrent;
+    private float mPlayThreshold = .6f;
+    private float mPauseThreshold = .3f;
+    private float mReleaseDistance = 2f;
+    private boolean mPassPending;
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            requestUpdate();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            requestUpdate();
+        }
+    };
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPassPending = false;
+            update();
+        }
+    };
+
+    public void attach(@NonNull ViewGroup container) {
+        detach();
+        mContainer = container;
+        ViewTreeObserver observer = container.getViewTreeObserver();
+        observer.addOnScrollChangedListener(mScrollListener);
+        observer.addOnGlobalLayoutListener(mLayoutListener);
+        for (int i = 0; i < mEntries.size(); i++) {
+            mEntries.get(i).mPlayer.setAutoPlay(false);
+        }
+        requestUpdate();
+    }
+
+    /**
+     * Stops tracking the container and pauses the player it started, the players stay registered
+     * with their auto play restored.
+     */
+    public void detach() {
+        if (mContainer == null) {
+            return;
+        }
+        ViewTreeObserver observer = mContainer.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnScrollChangedListener(mScrollListener);
+            observer.removeOnGlobalLayoutListener(mLayoutListener);
+        }
+        mContainer = null;
+        if (mPassPending) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mPassPending = false;
+        }
+        setCurrent(null);
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            entry.mPlayer.setAutoPlay(entry.mAutoPlay);
+        }
+    }
+
+    public void register(@NonNull EasyVideoPlayer player) {
+        if (find(player) == null) {
+            mEntries.add(new Entry(player));
+            if (mContainer != null) {
+                player.setAutoPlay(false);
+            }
+            requestUpdate();
+        }
+    }
+
+    public void unregister(@NonNull EasyVideoPlayer player) {
+        Entry entry = find(player);
+        if (entry == null) {
+            return;
+        }
+        if (entry == mCurrent) {
+            setCurrent(null);
+        }
+        mEntries.remove(entry);
+        player.setAutoPlay(entry.mAutoPlay);
+        requestUpdate();
+    }
+
+    @Nullable
+    public EasyVideoPlayer getCurrent() {
+        return mCurrent != null ? mCurrent.mPlayer : null;
+    }
+
+    /**
+     * Visible fraction from which a player starts. Defaults to 0.6.
+     */
+    public void setPlayThreshold(@FloatRange(from = 0, to = 1) float threshold) {
+        if (threshold <= 0 || threshold > 1 || threshold < mPauseThreshold) {
+            throw new IllegalArgumentException("The play threshold must be in ]0, 1] and not below the pause threshold.");
+        }
+        mPlayThreshold = threshold;
+        requestUpdate();
+    }
+
+    /**
+     * Visible fraction under which the playing player pauses. Defaults to 0.3.
+     */
+    public void setPauseThreshold(@FloatRange(from = 0, to = 1) float threshold) {
+        if (threshold < 0 || threshold > mPlayThreshold) {
+            throw new IllegalArgumentException("The pause threshold must be in [0, play threshold].");
+        }
+        mPauseThreshold = threshold;
+        requestUpdate();
+    }
+
+    /**
+     * Distance from the container viewport, in viewport heights, beyond which a player releases its
+     * engine. Defaults to 2.
+     */
+    public void setReleaseDistance(float viewports) {
+        if (viewports < 0) {
+            throw new IllegalArgumentException("The release distance cannot be negative.");
+        }
+        mReleaseDistance = viewports;
+        requestUpdate();
+    }
+
+    /**
+     * Schedules a visibility pass for the next frame, for changes the container does not report.
+     */
+    public void requestUpdate() {
+        if (mContainer != null && !mPassPending) {
+            mPassPending = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    private void update() {
+        if (mContainer == null) {
+            return;
+        }
+        mContainer.getLocationInWindow(mLocation);
+        int left = mLocation[0];
+        int top = mLocation[1];
+        int right = left + mContainer.getWidth();
+        int bottom = top + mContainer.getHeight();
+        boolean shown = mContainer.isShown() && mContainer.getWindowToken() != null;
+
+        Entry best = null;
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            measure(entry, shown, left, top, right, bottom);
+            if (entry.mFraction > 0 && (best == null || entry.mFraction > best.mFraction)) {
+                best = entry;
+            }
+        }
+
+        Entry target = mCurrent;
+        if (target != null && target.mFraction < mPauseThreshold) {
+            target = null;
+        }
+        if (best != null && best != target && best.mFraction >= mPlayThreshold
+                && (target == null || best.mFraction > target.mFraction)) {
+            target = best;
+        }
+        setCurrent(target);
+
+        Entry next = null;
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry != mCurrent && entry.mDistance != Integer.MAX_VALUE && (next == null || entry.mDistance < next.mDistance
+                    || entry.mDistance == next.mDistance && entry.mFraction > next.mFraction)) {
+                next = entry;
+            }
+        }
+
+        int releaseDistance = (int) (mReleaseDistance * (bottom - top));
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry == mCurrent || entry == next) {
+                revive(entry);
+            } else if (entry.mDistance != Integer.MAX_VALUE && entry.mDistance > releaseDistance) {
+                release(entry);
+            }
+        }
+        // Only warms the http cache, the engine of the next player is prepared by revive()
+        if (next != null && !next.mPrefetched) {
+            Uri source = next.mPlayer.getSource();
+            next.mPrefetched = source != null && EasyVideoPlayer.prefetch(source, PREFETCH_BYTES);
+        }
+    }
+
+    private void measure(@NonNull Entry entry, boolean shown, int left, int top, int right, int bottom) {
+        EasyVideoPlayer player = entry.mPlayer;
+        int width = player.getWidth();
+        int height = player.getHeight();
+        if (!shown || !player.isShown() || player.getWindowToken() == null || width == 0 || height == 0) {
+            entry.mFraction = 0;
+            entry.mDistance = Integer.MAX_VALUE;
+            return;
+        }
+        player.getLocationInWindow(mLocation);
+        int playerLeft = mLocation[0];
+        int playerTop = mLocation[1];
+        int visibleWidth = Math.min(right, playerLeft + width) - Math.max(left, playerLeft);
+        int visibleHeight = Math.min(bottom, playerTop + height) - Math.max(top, playerTop);
+        if (visibleWidth > 0 && visibleHeight > 0) {
+            entry.mFraction = (float) visibleWidth * visibleHeight / ((float) width * height);
+            entry.mDistance = 0;
+        } else {
+            entry.mFraction = 0;
+            entry.mDistance = Math.max(-visibleWidth, -visibleHeight);
+        }
+    }
+
+    private void setCurrent(@Nullable Entry entry) {
+        if (entry == mCurrent) {
+            return;
+        }
+        if (mCurrent != null) {
+            mCurrent.mPlayer.setAutoPlay(false);
+            mCurrent.mPlayer.pause();
+        }
+        mCurrent = entry;
+        if (entry != null) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "play " + entry.mPlayer.hashCode() + " visible " + entry.mFraction);
+            }
+            revive(entry);
+            // Starts as soon as buffered if it is not yet
+            entry.mPlayer.setAutoPlay(true);
+            entry.mPlayer.start();
+        }
+    }
+
+    // Also restores the players trimmed by EasyVideoPlayerConfig.trimMemory()
+    private void revive(@NonNull Entry entry) {
+        entry.mPlayer.restoreEngine();
+    }
+
+    private void release(@NonNull Entry entry) {
+        if (entry.mPlayer.releaseEngine()) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "release " + entry.mPlayer.hashCode() + " at " + entry.mDistance + "px");
+            }
+            entry.mPrefetched = false;
+        }
+    }
+
+    @Nullable
+    private Entry find(@NonNull EasyVideoPlayer player) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).mPlayer == player) {
+                return mEntries.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+
+        private final EasyVideoPlayer mPlayer;
+        private float mFraction;
+        // Pixels between the player and the viewport, 0 when visible
+        private int mDistance = Integer.MAX_VALUE;
+        private boolean mPrefetched;
+        // Auto play of the app, restored once the manager no longer drives the player
+        private final boolean mAutoPlay;
+
+        Entry(@NonNull EasyVideoPlayer player) {
+            mPlayer = player;
+            mAutoPlay = player.isAutoPlay();
+        }
+    }
+}
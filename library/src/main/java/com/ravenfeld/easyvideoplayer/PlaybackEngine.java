@@ -0,0 +1,88 @@
+package com.ravenfeld.easyvideoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * Decoder and renderer behind a player view, modeled on the subset of MediaPlayer the view uses.
+ * The default implementation wraps a pooled MediaPlayer, another one can be installed with
+ * {@link EasyVideoPlayerConfig#setPlaybackEngineFactory(Factory)}.
+ * <p>
+ * reset(), setSurface(), the setDataSource() variants, prepareAsync() and release() are called on
+ * a background thread, one at a time. The other methods are called on the main thread, where the
+ * listener must be called too. Error and info codes are the MediaPlayer ones.
+ */
+public interface PlaybackEngine {
+
+    interface Factory {
+
+        @NonNull
+        PlaybackEngine create(@NonNull Context context);
+    }
+
+    interface Listener {
+
+        void onPrepared(@NonNull PlaybackEngine engine);
+
+        void onBufferingUpdate(@NonNull PlaybackEngine engine, int percent);
+
+        void onSeekComplete(@NonNull PlaybackEngine engine);
+
+        void onCompletion(@NonNull PlaybackEngine engine);
+
+        void onVideoSizeChanged(@NonNull PlaybackEngine engine, int width, int height);
+
+        boolean onError(@NonNull PlaybackEngine engine, int what, int extra);
+
+        boolean onInfo(@NonNull PlaybackEngine engine, int what, int extra);
+    }
+
+    void setListener(@Nullable Listener listener);
+
+    void setDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException;
+
+    void setDataSource(@NonNull String url) throws IOException;
+
+    void setDataSource(@NonNull FileDescriptor fd, long offset, long length) throws IOException;
+
+    void prepareAsync();
+
+    void setSurface(@Nullable Surface surface);
+
+    void start();
+
+    void pause();
+
+    void stop();
+
+    void seekTo(int position);
+
+    /**
+     * Back to the idle state, ready for another data source.
+     */
+    void reset();
+
+    /**
+     * Frees the engine, it is not used anymore afterwards.
+     */
+    void release();
+
+    boolean isPlaying();
+
+    int getCurrentPosition();
+
+    int getDuration();
+
+    int getVideoWidth();
+
+    int getVideoHeight();
+
+    void setVolume(float leftVolume, float rightVolume);
+}
@@ -0,0 +1,271 @@
+package com.ravenfeld.easyvideoplayer;
+
+import androidx.annotation.NonNull;
+
+import com.ravenfeld.easyvideoplayer.internal.PlayerView;
+
+import java.util.Locale;
+
+/**
+ * Keeps running totals of the playback metrics of every player in memory.
+ */
+public class PlaybackMetricsAggregator extends PlaybackMetricsListener {
+
+    private long mStartupCount;
+    private long mStartupTotalMs;
+    private long mStartupMaxMs;
+    private long mPrepareCount;
+    private long mPrepareTotalMs;
+    private long mRebufferCount;
+    private long mRebufferTotalMs;
+    private long mSeekCount;
+    private long mSeekTotalMs;
+    private long mSeekMaxMs;
+    private long mFrameRateCount;
+    private double mFrameRateTotal;
+    private float mFrameRateMin = Float.MAX_VALUE;
+    private long mPlayedMs;
+    private long mVideoPlayedMs;
+    private long mVideoCpuMs;
+    private long mAudioOnlyPlayedMs;
+    private long mAudioOnlyCpuMs;
+    private long mRestoreCount;
+    private long mRestoreTotalMs;
+    private long mRestoreMaxMs;
+    private long mTransitionCount;
+    private long mTransitionPreparedCount;
+    private long mTransitionTotalMs;
+    private long mTransitionMaxMs;
+    private long mTrimCount;
+    private long mTrimmedInstances;
+    private long mTrimmedBytes;
+
+    @Override
+    public synchronized void onFirstFrame(PlayerView player, long startupMs, long prepareMs) {
+        mStartupCount++;
+        mStartupTotalMs += startupMs;
+        mStartupMaxMs = Math.max(mStartupMaxMs, startupMs);
+        if (prepareMs >= 0) {
+            mPrepareCount++;
+            mPrepareTotalMs += prepareMs;
+        }
+    }
+
+    @Override
+    public synchronized void onRebufferStart(PlayerView player) {
+        mRebufferCount++;
+    }
+
+    @Override
+    public synchronized void onRebufferEnd(PlayerView player, long durationMs) {
+        mRebufferTotalMs += durationMs;
+    }
+
+    @Override
+    public synchronized void onSeekComplete(PlayerView player, long latencyMs) {
+        mSeekCount++;
+        mSeekTotalMs += latencyMs;
+        mSeekMaxMs = Math.max(mSeekMaxMs, latencyMs);
+    }
+
+    @Override
+    public synchronized void onFrameRate(PlayerView player, float framesPerSecond) {
+        mFrameRateCount++;
+        mFrameRateTotal += framesPerSecond;
+        mFrameRateMin = Math.min(mFrameRateMin, framesPerSecond);
+    }
+
+    @Override
+    public synchronized void onPlaybackTime(PlayerView player, long playedMs) {
+        mPlayedMs += playedMs;
+    }
+
+    @Override
+    public synchronized void onCpuTime(PlayerView player, boolean videoRendered, long playedMs, long cpuMs) {
+        if (videoRendered) {
+            mVideoPlayedMs += playedMs;
+            mVideoCpuMs += cpuMs;
+        } else {
+            mAudioOnlyPlayedMs += playedMs;
+            mAudioOnlyCpuMs += cpuMs;
+        }
+    }
+
+    @Override
+    public synchronized void onSessionRestored(PlayerView player, long latencyMs) {
+        mRestoreCount++;
+        mRestoreTotalMs += latencyMs;
+        mRestoreMaxMs = Math.max(mRestoreMaxMs, latencyMs);
+    }
+
+    @Override
+    public synchronized void onTransition(PlayerView player, long gapMs, boolean prepared) {
+        mTransitionCount++;
+        if (prepared) {
+            mTransitionPreparedCount++;
+        }
+        mTransitionTotalMs += gapMs;
+        mTransitionMaxMs = Math.max(mTransitionMaxMs, gapMs);
+    }
+
+    @Override
+    public synchronized void onMemoryTrimmed(int level, int releasedInstances, long releasedBytes) {
+        mTrimCount++;
+        mTrimmedInstances += releasedInstances;
+        mTrimmedBytes += releasedBytes;
+    }
+
+    public synchronized long getStartupCount() {
+        return mStartupCount;
+    }
+
+    public synchronized long getAverageStartupMs() {
+        return mStartupCount == 0 ? -1 : mStartupTotalMs / mStartupCount;
+    }
+
+    public synchronized long getMaxStartupMs() {
+        return mStartupCount == 0 ? -1 : mStartupMaxMs;
+    }
+
+    public synchronized long getAveragePrepareMs() {
+        return mPrepareCount == 0 ? -1 : mPrepareTotalMs / mPrepareCount;
+    }
+
+    public synchronized long getRebufferCount() {
+        return mRebufferCount;
+    }
+
+    public synchronized long getRebufferMs() {
+        return mRebufferTotalMs;
+    }
+
+    /**
+     * Share of the playing time spent rebuffering.
+     */
+    public synchronized float getRebufferRatio() {
+        return mPlayedMs == 0 ? 0f : Math.min(1f, (float) mRebufferTotalMs / mPlayedMs);
+    }
+
+    public synchronized long getSeekCount() {
+        return mSeekCount;
+    }
+
+    public synchronized long getAverageSeekMs() {
+        return mSeekCount == 0 ? -1 : mSeekTotalMs / mSeekCount;
+    }
+
+    public synchronized long getMaxSeekMs() {
+        return mSeekCount == 0 ? -1 : mSeekMaxMs;
+    }
+
+    public synchronized float getAverageFrameRate() {
+        return mFrameRateCount == 0 ? 0f : (float) (mFrameRateTotal / mFrameRateCount);
+    }
+
+    public synchronized float getMinFrameRate() {
+        return mFrameRateCount == 0 ? 0f : mFrameRateMin;
+    }
+
+    public synchronized long getPlayedMs() {
+        return mPlayedMs;
+    }
+
+    /**
+     * Process CPU milliseconds per second of playback with the video rendered, or -1 if none.
+     */
+    public synchronized float getVideoCpuMsPerSecond() {
+        return mVideoPlayedMs == 0 ? -1 : mVideoCpuMs * 1000f / mVideoPlayedMs;
+    }
+
+    /**
+     * Process CPU milliseconds per second of audio only playback, or -1 if none.
+     */
+    public synchronized float getAudioOnlyCpuMsPerSecond() {
+        return mAudioOnlyPlayedMs == 0 ? -1 : mAudioOnlyCpuMs * 1000f / mAudioOnlyPlayedMs;
+    }
+
+    public synchronized long getRestoreCount() {
+        return mRestoreCount;
+    }
+
+    public synchronized long getAverageRestoreMs() {
+        return mRestoreCount == 0 ? -1 : mRestoreTotalMs / mRestoreCount;
+    }
+
+    public synchronized long getMaxRestoreMs() {
+        return mRestoreMaxMs;
+    }
+
+    public synchronized long getTransitionCount() {
+        return mTransitionCount;
+    }
+
+    /**
+     * Transitions whose next source was prepared ahead.
+     */
+    public synchronized long getPreparedTransitionCount() {
+        return mTransitionPreparedCount;
+    }
+
+    public synchronized long getAverageTransitionMs() {
+        return mTransitionCount == 0 ? -1 : mTransitionTotalMs / mTransitionCount;
+    }
+
+    public synchronized long getMaxTransitionMs() {
+        return mTransitionMaxMs;
+    }
+
+    public synchronized long getTrimCount() {
+        return mTrimCount;
+    }
+
+    public synchronized long getTrimmedInstances() {
+        return mTrimmedInstances;
+    }
+
+    public synchronized long getTrimmedBytes() {
+        return mTrimmedBytes;
+    }
+
+    public synchronized void reset() {
+        mStartupCount = 0;
+        mStartupTotalMs = 0;
+        mStartupMaxMs = 0;
+        mPrepareCount = 0;
+        mPrepareTotalMs = 0;
+        mRebufferCount = 0;
+        mRebufferTotalMs = 0;
+        mSeekCount = 0;
+        mSeekTotalMs = 0;
+        mSeekMaxMs = 0;
+        mFrameRateCount = 0;
+        mFrameRateTotal = 0;
+        mFrameRateMin = Float.MAX_VALUE;
+        mPlayedMs = 0;
+        mVideoPlayedMs = 0;
+        mVideoCpuMs = 0;
+        mAudioOnlyPlayedMs = 0;
+        mAudioOnlyCpuMs = 0;
+        mRestoreCount = 0;
+        mRestoreTotalMs = 0;
+        mRestoreMaxMs = 0;
+        mTransitionCount = 0;
+        mTransitionPreparedCount = 0;
+        mTransitionTotalMs = 0;
+        mTransitionMaxMs = 0;
+        mTrimCount = 0;
+        mTrimmedInstances = 0;
+        mTrimmedBytes = 0;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "startup=%d avg=%dms max=%dms prepare=%dms rebuffer=%d %dms ratio=%.3f seek=%d avg=%dms max=%dms fps=%.1f min=%.1f played=%dms cpu=%.1f audioOnly=%.1fms/s restore=%d avg=%dms max=%dms transition=%d prepared=%d avg=%dms max=%dms trim=%d released=%d %dB",
+                mStartupCount, getAverageStartupMs(), getMaxStartupMs(), getAveragePrepareMs(), mRebufferCount,
+                mRebufferTotalMs, getRebufferRatio(), mSeekCount, getAverageSeekMs(), getMaxSeekMs(),
+                getAverageFrameRate(), getMinFrameRate(), mPlayedMs, getVideoCpuMsPerSecond(), getAudioOnlyCpuMsPerSecond(), mRestoreCount, getAverageRestoreMs(), mRestoreMaxMs,
+                mTransitionCount, mTransitionPreparedCount, getAverageTransitionMs(), mTransitionMaxMs,
+                mTrimCount, mTrimmedInstances, mTrimmedBytes);
+    }
+}
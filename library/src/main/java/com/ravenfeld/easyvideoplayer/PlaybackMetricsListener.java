@@ -0,0 +1,97 @@
+package com.ravenfeld.easyvideoplayer;
+
+import com.ravenfeld.easyvideoplayer.internal.PlayerView;
+
+/**
+ * Receives the playback quality measurements of every player, on the main thread. Register it
+ * with {@link EasyVideoPlayerConfig#addPlaybackMetricsListener(PlaybackMetricsListener)}.
+ */
+public abstract class PlaybackMetricsListener {
+
+    /**
+     * @param startupMs time from the source being set to its first frame on screen
+     * @param prepareMs time from the prepare request to onPrepared, or -1 if unknown
+     */
+    public void onFirstFrame(PlayerView player, long startupMs, long prepareMs) {
+
+    }
+
+    public void onRebufferStart(PlayerView player) {
+
+    }
+
+    public void onRebufferEnd(PlayerView player, long durationMs) {
+
+    }
+
+    /**
+     * @param latencyMs time from seekTo() to the player completing the last of the seeks issued in
+     *                  a row
+     */
+    public void onSeekComplete(PlayerView player, long latencyMs) {
+
+    }
+
+    /**
+     * Frames rendered per second while playing, reported about once a second.
+     */
+    public void onFrameRate(PlayerView player, float framesPerSecond) {
+
+    }
+
+    /**
+     * Time spent playing, stalls included, since the previous report. Sent when playback stops or
+     * pauses.
+     */
+    public void onPlaybackTime(PlayerView player, long playedMs) {
+
+    }
+
+    /**
+     * CPU time of the process while playing, sent when playback pauses or when the video stops or
+     * starts being rendered, see {@link IUserMethods#setAudioOnly(boolean)}. The platform decoders
+     * run in the media server process and are not included, the difference is the composition of
+     * the video frames.
+     *
+     * @param videoRendered whether the video was rendered or only the audio played
+     * @param playedMs      playback time measured
+     * @param cpuMs         CPU time used by the process meanwhile, all threads included
+     */
+    public void onCpuTime(PlayerView player, boolean videoRendered, long playedMs, long cpuMs) {
+
+    }
+
+    /**
+     * Sent when a player recreated by a configuration change took over the prepared playback of
+     * the destroyed one instead of preparing again.
+     *
+     * @param latencyMs time from the destroyed view releasing the video to the first frame drawn
+     *                  by the recreated one
+     */
+    public void onSessionRestored(PlayerView player, long latencyMs) {
+
+    }
+
+    /**
+     * Sent when the first frame of a queued source is drawn.
+     *
+     * @param gapMs    time from the completion of the previous source to that frame
+     * @param prepared whether the source was prepared ahead, otherwise it was prepared on
+     *                 completion
+     */
+    public void onTransition(PlayerView player, long gapMs, boolean prepared) {
+
+    }
+
+    /**
+     * Sent after the players reacted to a memory trim.
+     *
+     * @param level             the ComponentCallbacks2 TRIM_MEMORY level
+     * @param releasedInstances players and idle pooled players whose native player was released
+     * @param releasedBytes     bitmap memory dropped, the native decoder memory is not measurable
+     *                          and not included
+     */
+    public void onMemoryTrimmed(int level, int releasedInstances, long releasedBytes) {
+
+    }
+}
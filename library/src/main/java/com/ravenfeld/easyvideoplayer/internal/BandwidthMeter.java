@@ -0,0 +1,58 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+/**
+ * Process-wide estimate of the download throughput, as an exponentially weighted average of the
+ * transfers made from the network. Larger transfers weigh more, short ones are ignored since
+ * their duration is dominated by latency.
+ */
+public class BandwidthMeter {
+
+    private static final long DEFAULT_ESTIMATE = 1000000;
+    private static final long MIN_SAMPLE_BYTES = 32 * 1024;
+    private static final long MIN_SAMPLE_MS = 5;
+    private static final double HALF_WEIGHT_BYTES = 512 * 1024;
+
+    private static final BandwidthMeter INSTANCE = new BandwidthMeter();
+
+    private double mEstimate = DEFAULT_ESTIMATE;
+    private int mSampleCount;
+
+    public static BandwidthMeter get() {
+        return INSTANCE;
+    }
+
+    private BandwidthMeter() {
+    }
+
+    /**
+     * Records {@code bytes} read from the network in {@code elapsedMs}.
+     */
+    synchronized void onTransfer(long bytes, long elapsedMs) {
+        if (bytes < MIN_SAMPLE_BYTES) {
+            return;
+        }
+        double sample = bytes * 8000d / Math.max(elapsedMs, MIN_SAMPLE_MS);
+        double weight = mSampleCount == 0 ? 1 : bytes / (bytes + HALF_WEIGHT_BYTES);
+        mEstimate += (sample - mEstimate) * weight;
+        mSampleCount++;
+    }
+
+    /**
+     * Estimated throughput in bits per second.
+     */
+    public synchronized long getEstimate() {
+        return (long) mEstimate;
+    }
+
+    public synchronized int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * Forgets the samples, back to the default estimate.
+     */
+    synchronized void reset() {
+        mEstimate = DEFAULT_ESTIMATE;
+        mSampleCount = 0;
+    }
+}
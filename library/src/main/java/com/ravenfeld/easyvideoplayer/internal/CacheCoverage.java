@@ -0,0 +1,62 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the byte ranges of a source held in the http cache.
+ */
+public class CacheCoverage {
+
+    private final long mLength;
+    private final long[] mSpans;
+    private final long mCachedBytes;
+
+    CacheCoverage(long length, @NonNull long[] spans, long cachedBytes) {
+        mLength = length;
+        mSpans = spans;
+        mCachedBytes = cachedBytes;
+    }
+
+    /**
+     * Length of the source in bytes, or -1 if not known yet.
+     */
+    public long getLength() {
+        return mLength;
+    }
+
+    public long getCachedBytes() {
+        return mCachedBytes;
+    }
+
+    public int getSpanCount() {
+        return mSpans.length / 2;
+    }
+
+    public long getSpanStart(int index) {
+        return mSpans[index * 2];
+    }
+
+    /**
+     * Exclusive end of the span at {@code index}.
+     */
+    public long getSpanEnd(int index) {
+        return mSpans[index * 2 + 1];
+    }
+
+    /**
+     * End of the cached bytes contiguous to {@code position}, or {@code position} if that byte is
+     * not cached.
+     */
+    public long getCachedEnd(long position) {
+        for (int i = 0; i < mSpans.length; i += 2) {
+            if (mSpans[i] <= position && position < mSpans[i + 1]) {
+                return mSpans[i + 1];
+            }
+        }
+        return position;
+    }
+
+    public float getCachedFraction() {
+        return mLength <= 0 ? 0f : (float) mCachedBytes / mLength;
+    }
+}
@@ -0,0 +1,149 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * Orders seek, start and pause commands around the asynchronous seeks of the player. A seek is
+ * issued right away when none is in flight, otherwise it waits for {@link #onSeekComplete()}
+ * and consecutive seeks collapse into the latest target. Start and pause keep their order
+ * relative to the seeks around them.
+ */
+class CommandQueue {
+
+    interface Target {
+
+        void onSeek(int position);
+
+        void onStart();
+
+        void onPause();
+    }
+
+    private static final int SEEK = 0;
+    private static final int START = 1;
+    private static final int PAUSE = 2;
+
+    private Target mTarget;
+    private final ArrayDeque<Command> mPending = new ArrayDeque<>();
+    private boolean mSeekInFlight;
+    private long mIssuedSeeks;
+    private long mCoalescedSeeks;
+
+    CommandQueue(@NonNull Target target) {
+        mTarget = target;
+    }
+
+    /**
+     * Hands the pending commands over to another target, when the player moves to a new view.
+     */
+    void setTarget(@NonNull Target target) {
+        mTarget = target;
+    }
+
+    void seekTo(int position) {
+        if (!mSeekInFlight && mPending.isEmpty()) {
+            issueSeek(position);
+            return;
+        }
+        Command last = mPending.peekLast();
+        if (last != null && last.mType == SEEK) {
+            last.mPosition = position;
+            mCoalescedSeeks++;
+        } else {
+            mPending.add(new Command(SEEK, position));
+        }
+    }
+
+    void start() {
+        enqueue(START);
+    }
+
+    void pause() {
+        enqueue(PAUSE);
+    }
+
+    /**
+     * Whether commands are waiting for a seek to complete.
+     */
+    boolean isBusy() {
+        return mSeekInFlight || !mPending.isEmpty();
+    }
+
+    void onSeekComplete() {
+        mSeekInFlight = false;
+        while (!mSeekInFlight && !mPending.isEmpty()) {
+            Command command = mPending.poll();
+            switch (command.mType) {
+                case SEEK:
+                    issueSeek(command.mPosition);
+                    break;
+                case START:
+                    mTarget.onStart();
+                    break;
+                case PAUSE:
+                    mTarget.onPause();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Forgets every command, to be called when the player is reset and will not complete the seek
+     * in flight.
+     */
+    void clear() {
+        mPending.clear();
+        mSeekInFlight = false;
+    }
+
+    /**
+     * Seeks actually handed to the player.
+     */
+    long getIssuedSeeks() {
+        return mIssuedSeeks;
+    }
+
+    /**
+     * Seeks replaced by a later one before being issued.
+     */
+    long getCoalescedSeeks() {
+        return mCoalescedSeeks;
+    }
+
+    private void enqueue(int type) {
+        if (!isBusy()) {
+            if (type == START) {
+                mTarget.onStart();
+            } else {
+                mTarget.onPause();
+            }
+            return;
+        }
+        Command last = mPending.peekLast();
+        if (last != null && last.mType != SEEK) {
+            // Only the latest of consecutive start/pause matters
+            last.mType = type;
+        } else {
+            mPending.add(new Command(type, -1));
+        }
+    }
+
+    private void issueSeek(int position) {
+        mSeekInFlight = true;
+        mIssuedSeeks++;
+        mTarget.onSeek(position);
+    }
+
+    private static class Command {
+
+        private int mType;
+        private int mPosition;
+
+        Command(int type, int position) {
+            mType = type;
+            mPosition = position;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Formats durations as [-][H:]MM:SS into a reused buffer, without allocating. The last rendered
+ * second is remembered so that callers only touch their view when the text changes.
+ */
+class DurationFormatter {
+
+    // Sign, up to 6 digits of hours and two separators with two digits each
+    private static final int MAX_LENGTH = 13;
+
+    private final char[] mBuffer = new char[MAX_LENGTH];
+    private final char mZeroDigit;
+    private int mStart = MAX_LENGTH;
+    private long mLastSeconds = -1;
+    private boolean mLastNegative;
+
+    DurationFormatter() {
+        mZeroDigit = DecimalFormatSymbols.getInstance().getZeroDigit();
+    }
+
+    /**
+     * @return true if the text changed since the previous call
+     */
+    boolean format(long durationMs, boolean negativePrefix) {
+        long seconds = Math.max(0, durationMs) / 1000;
+        if (seconds == mLastSeconds && negativePrefix == mLastNegative) {
+            return false;
+        }
+        mLastSeconds = seconds;
+        mLastNegative = negativePrefix;
+
+        long hours = seconds / 3600;
+        int minutes = (int) (seconds / 60 % 60);
+        int secs = (int) (seconds % 60);
+        int i = MAX_LENGTH;
+        mBuffer[--i] = (char) (mZeroDigit + secs % 10);
+        mBuffer[--i] = (char) (mZeroDigit + secs / 10);
+        mBuffer[--i] = ':';
+        mBuffer[--i] = (char) (mZeroDigit + minutes % 10);
+        mBuffer[--i] = (char) (mZeroDigit + minutes / 10);
+        if (hours > 0) {
+            mBuffer[--i] = ':';
+            do {
+                mBuffer[--i] = (char) (mZeroDigit + hours % 10);
+                hours /= 10;
+            } while (hours > 0 && i > 1);
+        }
+        if (negativePrefix) {
+            mBuffer[--i] = '-';
+        }
+        mStart = i;
+        return true;
+    }
+
+    /**
+     * Formats {@code durationMs} into {@code view} if the rendered second changed.
+     */
+    void setText(@NonNull TextView view, long durationMs, boolean negativePrefix) {
+        if (format(durationMs, negativePrefix)) {
+            view.setText(mBuffer, mStart, MAX_LENGTH - mStart);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return new String(mBuffer, mStart, MAX_LENGTH - mStart);
+    }
+}
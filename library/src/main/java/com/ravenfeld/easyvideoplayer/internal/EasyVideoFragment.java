@@ -5,6 +5,7 @@ import android.app.Activity;
 import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.pm.ActivityInfo;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
@@ -188,6 +189,7 @@ public class EasyVideoFragment extends DialogFragment implements InternalCallbac
 
     @Override
     public void onFullScreen(PlayerView player) {
+        player.beginSurfaceTransition();
         player.setVideoOnly(true);
         Activity a = getActivity();
         if (a != null) {
@@ -210,6 +212,7 @@ public class EasyVideoFragment extends DialogFragment implements InternalCallbac
 
     @Override
     public void onFullScreenExit(PlayerView player) {
+        player.beginSurfaceTransition();
         player.setVideoOnly(false);
         Activity a = getActivity();
         if (a != null) {
@@ -274,6 +277,13 @@ public class EasyVideoFragment extends DialogFragment implements InternalCallbac
         }
     }
 
+    @Override
+    public void onQueueAdvanced(PlayerView player, Uri source) {
+        if (fragmentCallback != null && fragmentCallback.get() != null) {
+            fragmentCallback.get().onQueueAdvanced(player, source);
+        }
+    }
+
     @Override
     public void onRestoreInstance(PlayerView player) {
         if (fragmentCallback != null && fragmentCallback.get() != null) {
@@ -1,5 +1,6 @@
 package com.ravenfeld.easyvideoplayer.internal;
 
+import android.net.Uri;
 
 public interface FragmentCallback {
 
@@ -13,4 +14,5 @@ public interface FragmentCallback {
 
     void onRestoreView(PlayerView playerView);
 
+    void onQueueAdvanced(PlayerView player, Uri source);
 }
@@ -0,0 +1,214 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal HLS playlist model: the variants of a master playlist or the segments of a media
+ * playlist, with their URIs resolved against the playlist URL.
+ */
+class HlsPlaylist {
+
+    private static final String EXTM3U = "#EXTM3U";
+    private static final String STREAM_INF = "#EXT-X-STREAM-INF:";
+    private static final String END_LIST = "#EXT-X-ENDLIST";
+    private static final Pattern BANDWIDTH = Pattern.compile("(?:^|,)BANDWIDTH=(\\d+)");
+    private static final Pattern RESOLUTION = Pattern.compile("(?:^|,)RESOLUTION=(\\d+)x(\\d+)");
+    private static final Pattern URI_ATTRIBUTE = Pattern.compile("URI=\"([^\"]*)\"");
+    private static final int TIMEOUT = 15000;
+    // Share of the estimated bandwidth a variant may use, the rest absorbs the estimate noise
+    private static final float BANDWIDTH_FRACTION = .75f;
+
+    interface UriMapper {
+
+        @NonNull
+        String map(@NonNull String uri);
+    }
+
+    static class Variant {
+
+        final long mBandwidth;
+        final int mWidth;
+        final int mHeight;
+        final String mUri;
+
+        private Variant(long bandwidth, int width, int height, @NonNull String uri) {
+            mBandwidth = bandwidth;
+            mWidth = width;
+            mHeight = height;
+            mUri = uri;
+        }
+    }
+
+    final List<Variant> mVariants;
+    final List<String> mSegments;
+    final boolean mEndList;
+
+    private HlsPlaylist(@NonNull List<Variant> variants, @NonNull List<String> segments, boolean endList) {
+        mVariants = variants;
+        mSegments = segments;
+        mEndList = endList;
+    }
+
+    static boolean isPlaylist(@NonNull Uri source) {
+        String path = source.getPath();
+        return path != null && path.toLowerCase(Locale.US).endsWith(".m3u8");
+    }
+
+    boolean isMaster() {
+        return !mVariants.isEmpty();
+    }
+
+    /**
+     * Highest bandwidth variant fitting in the estimated bandwidth, or the lowest one if none
+     * fits.
+     */
+    @Nullable
+    Variant select(long estimate) {
+        Variant best = null;
+        Variant lowest = null;
+        long budget = (long) (estimate * BANDWIDTH_FRACTION);
+        for (Variant variant : mVariants) {
+            if (variant.mBandwidth <= budget && (best == null || variant.mBandwidth > best.mBandwidth)) {
+                best = variant;
+            }
+            if (lowest == null || variant.mBandwidth < lowest.mBandwidth) {
+                lowest = variant;
+            }
+        }
+        return best != null ? best : lowest;
+    }
+
+    @NonNull
+    static HlsPlaylist parse(@NonNull String url, @NonNull String text) throws IOException {
+        String[] lines = text.split("\r?\n");
+        if (lines.length == 0 || !lines[0].trim().startsWith(EXTM3U)) {
+            throw new IOException("Not an HLS playlist: " + url);
+        }
+        List<Variant> variants = new ArrayList<>();
+        List<String> segments = new ArrayList<>();
+        boolean endList = false;
+        String streamInf = null;
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(STREAM_INF)) {
+                streamInf = line.substring(STREAM_INF.length());
+            } else if (line.startsWith(END_LIST)) {
+                endList = true;
+            } else if (!line.startsWith("#")) {
+                String uri = resolve(url, line);
+                if (streamInf != null) {
+                    variants.add(parseVariant(streamInf, uri));
+                    streamInf = null;
+                } else {
+                    segments.add(uri);
+                }
+            }
+        }
+        return new HlsPlaylist(Collections.unmodifiableList(variants), Collections.unmodifiableList(segments), endList);
+    }
+
+    /**
+     * Resolves every URI of the playlist against {@code url}, the segment and variant URIs being
+     * passed through {@code mapper}.
+     */
+    @NonNull
+    static String rewrite(@NonNull String url, @NonNull String text, @NonNull UriMapper mapper) throws IOException {
+        StringBuilder sb = new StringBuilder(text.length() * 2);
+        for (String line : text.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                sb.append('\n');
+            } else if (!trimmed.startsWith("#")) {
+                sb.append(mapper.map(resolve(url, trimmed))).append('\n');
+            } else {
+                // Keys and init sections are fetched directly, only their URI is made absolute
+                Matcher matcher = URI_ATTRIBUTE.matcher(trimmed);
+                StringBuffer tag = new StringBuffer(trimmed.length());
+                while (matcher.find()) {
+                    matcher.appendReplacement(tag, Matcher.quoteReplacement("URI=\"" + resolve(url, matcher.group(1)) + "\""));
+                }
+                matcher.appendTail(tag);
+                sb.append(tag).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Downloads the playlist at {@code url}, feeding the transfer to the {@link BandwidthMeter}.
+     * Must not be called on the main thread.
+     */
+    @NonNull
+    static String download(@NonNull String url) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        InputStream in = null;
+        try {
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Origin responded " + code + " for " + url);
+            }
+            in = connection.getInputStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            BandwidthMeter.get().onTransfer(out.size(), SystemClock.elapsedRealtime() - start);
+            return out.toString("UTF-8");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+            connection.disconnect();
+        }
+    }
+
+    @NonNull
+    private static Variant parseVariant(@NonNull String attributes, @NonNull String uri) {
+        long bandwidth = 0;
+        int width = 0;
+        int height = 0;
+        Matcher matcher = BANDWIDTH.matcher(attributes);
+        if (matcher.find()) {
+            bandwidth = Long.parseLong(matcher.group(1));
+        }
+        matcher = RESOLUTION.matcher(attributes);
+        if (matcher.find()) {
+            width = Integer.parseInt(matcher.group(1));
+            height = Integer.parseInt(matcher.group(2));
+        }
+        return new Variant(bandwidth, width, height, uri);
+    }
+
+    @NonNull
+    private static String resolve(@NonNull String base, @NonNull String uri) throws MalformedURLException {
+        return new URL(new URL(base), uri).toString();
+    }
+}
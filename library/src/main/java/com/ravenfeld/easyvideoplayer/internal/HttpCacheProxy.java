@@ -0,0 +1,598 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loopback HTTP proxy placed between MediaPlayer and http/https sources. The cached spans of a
+ * requested range are served from an {@link HttpCacheStore} and only the missing ranges are
+ * fetched from the origin, the fetched bytes being written to the store as they are forwarded.
+ * <p>
+ * The proxy only speaks the subset of HTTP/1.1 MediaPlayer uses: GET or HEAD with an optional
+ * single {@code Range: bytes=start-[end]} header, one request per connection. Request paths carry
+ * a random token so that the other apps of the device cannot use it to fetch arbitrary URLs, and
+ * only http/https origins are fetched.
+ */
+public class HttpCacheProxy implements HttpCacheStore.Listener {
+
+    public interface CoverageListener {
+
+        /**
+         * Called on a proxy thread each time new bytes of the source are cached.
+         */
+        void onCoverageChanged();
+    }
+
+    private static final String TAG = "HttpCacheProxy";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int TIMEOUT = 15000;
+    // Bounds what a local client can hold before its request is parsed
+    private static final int HEADER_TIMEOUT = 5000;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final int MAX_CONNECTIONS = 8;
+    // Segments of a VOD media playlist downloaded ahead of the player, after the first one
+    private static final int SEGMENT_PREFETCH_COUNT = 3;
+    private static final long SEGMENT_PREFETCH_BYTES = 4 * 1024 * 1024;
+    // A write blocked longer than this means the player buffer is full and stopped reading
+    private static final long PLAYER_STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private static HttpCacheProxy sInstance;
+
+    private final HttpCacheStore mStore;
+    private final String mToken;
+    private final ExecutorService mExecutor;
+    private final CountDownLatch mStarted = new CountDownLatch(1);
+    private final Map<String, List<CoverageListener>> mCoverageListeners = new HashMap<>();
+    private volatile ServerSocket mServerSocket;
+    private volatile boolean mStopped;
+
+    public static synchronized void install(@NonNull File directory, long maxBytes) {
+        uninstall();
+        sInstance = new HttpCacheProxy(new HttpCacheStore(directory, maxBytes));
+    }
+
+    public static synchronized void uninstall() {
+        if (sInstance != null) {
+            sInstance.stop();
+            sInstance = null;
+        }
+    }
+
+    @Nullable
+    public static synchronized HttpCacheProxy get() {
+        return sInstance;
+    }
+
+    private HttpCacheProxy(@NonNull HttpCacheStore store) {
+        mStore = store;
+        mStore.setListener(this);
+        SecureRandom random = new SecureRandom();
+        mToken = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+        ThreadFactory factory = new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "EasyVideoPlayer-cache-" + mCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        mExecutor = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+        Thread acceptor = factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+        acceptor.start();
+    }
+
+    /**
+     * Rewrites {@code url} so that it is loaded through the proxy. Blocks until the proxy is
+     * listening, must not be called on the main thread.
+     */
+    @NonNull
+    public String getProxyUrl(@NonNull String url) {
+        try {
+            if (!mStarted.await(TIMEOUT, TimeUnit.MILLISECONDS) || mServerSocket == null) {
+                return url;
+            }
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/" + mToken + "/" + URLEncoder.encode(url, "UTF-8");
+        } catch (InterruptedException | UnsupportedEncodingException e) {
+            return url;
+        }
+    }
+
+    @NonNull
+    public HttpCacheStats getStats() {
+        return mStore.getStats();
+    }
+
+    public void clear() {
+        mStore.clear();
+    }
+
+    /**
+     * Byte ranges of {@code url} currently on disk, or null if nothing was ever cached for it.
+     */
+    @Nullable
+    public CacheCoverage getCoverage(@NonNull String url) {
+        return mStore.getCoverage(url);
+    }
+
+    public void addCoverageListener(@NonNull String url, @NonNull CoverageListener listener) {
+        String key = HttpCacheStore.keyOf(url);
+        synchronized (mCoverageListeners) {
+            List<CoverageListener> listeners = mCoverageListeners.get(key);
+            if (listeners == null) {
+                listeners = new ArrayList<>();
+                mCoverageListeners.put(key, listeners);
+            }
+            if (!listeners.contains(listener)) {
+                listeners.add(listener);
+            }
+        }
+    }
+
+    public void removeCoverageListener(@NonNull String url, @NonNull CoverageListener listener) {
+        String key = HttpCacheStore.keyOf(url);
+        synchronized (mCoverageListeners) {
+            List<CoverageListener> listeners = mCoverageListeners.get(key);
+            if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+                mCoverageListeners.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void onSpansChanged(@NonNull String key) {
+        CoverageListener[] listeners;
+        synchronized (mCoverageListeners) {
+            List<CoverageListener> list = mCoverageListeners.get(key);
+            if (list == null) {
+                return;
+            }
+            listeners = list.toArray(new CoverageListener[list.size()]);
+        }
+        for (CoverageListener listener : listeners) {
+            listener.onCoverageChanged();
+        }
+    }
+
+    private void stop() {
+        mStopped = true;
+        ServerSocket serverSocket = mServerSocket;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        mExecutor.shutdown();
+    }
+
+    private void acceptLoop() {
+        try {
+            mServerSocket = new ServerSocket(0, MAX_CONNECTIONS, InetAddress.getByName("127.0.0.1"));
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to start the cache proxy", e);
+            return;
+        } finally {
+            mStarted.countDown();
+        }
+        while (!mStopped) {
+            try {
+                final Socket client = mServerSocket.accept();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(client);
+                    }
+                });
+            } catch (IOException e) {
+                if (!mStopped && EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "accept: error", e);
+                }
+            }
+        }
+    }
+
+    private void handle(@NonNull Socket client) {
+        HttpCacheStore.Entry entry = null;
+        try {
+            client.setSoTimeout(HEADER_TIMEOUT);
+            OutputStream out = client.getOutputStream();
+            Request request = Request.read(client.getInputStream(),
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HEADER_TIMEOUT));
+            client.setSoTimeout(TIMEOUT);
+            if (request == null) {
+                writeHeader(out, "400 Bad Request", "Content-Length: 0\r\n");
+                return;
+            }
+            request.mUrl = resolveTarget(request.mTarget);
+            if (request.mUrl == null) {
+                writeHeader(out, "403 Forbidden", "Content-Length: 0\r\n");
+                return;
+            }
+            if (HlsPlaylist.isPlaylist(Uri.parse(request.mUrl))) {
+                servePlaylist(request, out);
+                return;
+            }
+            entry = mStore.acquire(request.mUrl);
+            serve(request, entry, out);
+        } catch (IOException e) {
+            // The player closes its connection on every seek, nothing to report
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "handle: " + e);
+            }
+        } catch (RuntimeException e) {
+            // Whatever the request or the origin, the proxy thread must not take the process down
+            Log.w(TAG, "Unable to serve a request", e);
+        } finally {
+            if (entry != null) {
+                mStore.release(entry);
+            }
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Origin URL of a request path built by {@link #getProxyUrl(String)}, or null if the path does
+     * not carry the token of this proxy or the URL is not an http/https one.
+     */
+    @Nullable
+    private String resolveTarget(@NonNull String target) {
+        String prefix = "/" + mToken + "/";
+        if (!target.startsWith(prefix)) {
+            return null;
+        }
+        String url;
+        try {
+            url = URLDecoder.decode(target.substring(prefix.length()), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+        String scheme = url.substring(0, Math.max(0, url.indexOf(':'))).toLowerCase(Locale.US);
+        return scheme.equals("http") || scheme.equals("https") ? url : null;
+    }
+
+    /**
+     * Playlists are never cached, live ones change over time. Their URIs are rewritten so that the
+     * segments are loaded through the proxy too.
+     */
+    private void servePlaylist(@NonNull Request request, @NonNull OutputStream out) throws IOException {
+        String text = HlsPlaylist.download(request.mUrl);
+        HlsPlaylist playlist = HlsPlaylist.parse(request.mUrl, text);
+        byte[] body = HlsPlaylist.rewrite(request.mUrl, text, new HlsPlaylist.UriMapper() {
+            @NonNull
+            @Override
+            public String map(@NonNull String uri) {
+                return getProxyUrl(uri);
+            }
+        }).getBytes("UTF-8");
+        writeHeader(out, "200 OK", "Content-Type: application/vnd.apple.mpegurl\r\nContent-Length: " + body.length + "\r\n");
+        if (request.mHead) {
+            return;
+        }
+        out.write(body);
+        out.flush();
+
+        // The player requests the first segment right away, warm the following ones
+        if (playlist.mEndList) {
+            int last = Math.min(playlist.mSegments.size(), 1 + SEGMENT_PREFETCH_COUNT);
+            for (int i = 1; i < last; i++) {
+                PrefetchManager.get().prefetch(Uri.parse(playlist.mSegments.get(i)), SEGMENT_PREFETCH_BYTES);
+            }
+        }
+    }
+
+    private void serve(@NonNull Request request, @NonNull HttpCacheStore.Entry entry, @NonNull OutputStream out) throws IOException {
+        long start = request.mRangeStart;
+        // Transfer measured for the bandwidth estimate, from the origin connection until the player
+        // first stops reading: afterwards the fetch is paced by its buffer rather than the network
+        long sampleBytes = 0;
+        long sampleNanos = 0;
+        boolean sampling = true;
+        Origin origin = null;
+        RandomAccessFile reader = null;
+        RandomAccessFile writer = null;
+        try {
+            if (entry.getLength() < 0) {
+                // First request for this source: the origin gives the length and type
+                long openStart = System.nanoTime();
+                origin = new Origin(request.mUrl, entry.getCachedEnd(start), -1);
+                sampleNanos += System.nanoTime() - openStart;
+                entry.setInfo(origin.mLength, origin.mConnection.getContentType());
+            }
+
+            long length = entry.getLength();
+            long end = request.mRangeEnd >= 0 ? request.mRangeEnd : length - 1;
+            if (length >= 0 && end >= length) {
+                end = length - 1;
+            }
+            if (length >= 0 && start >= length) {
+                writeHeader(out, "416 Range Not Satisfiable", "Content-Range: bytes */" + length + "\r\n");
+                return;
+            }
+
+            StringBuilder headers = new StringBuilder();
+            String mime = entry.getMime();
+            if (mime != null) {
+                headers.append("Content-Type: ").append(mime).append("\r\n");
+            }
+            headers.append("Accept-Ranges: bytes\r\n");
+            if (end >= 0) {
+                headers.append("Content-Length: ").append(end - start + 1).append("\r\n");
+            }
+            if (request.mHasRange) {
+                headers.append("Content-Range: bytes ").append(start).append('-')
+                        .append(end >= 0 ? String.valueOf(end) : "").append('/')
+                        .append(length >= 0 ? String.valueOf(length) : "*").append("\r\n");
+            }
+            writeHeader(out, request.mHasRange ? "206 Partial Content" : "200 OK", headers.toString());
+            if (request.mHead) {
+                return;
+            }
+
+            // Walk the requested range, stitching cached spans read from disk with the missing
+            // ranges fetched from the origin, which are written to the cache on the way
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = start;
+            long remaining = end >= 0 ? end - start + 1 : Long.MAX_VALUE;
+            while (remaining > 0) {
+                long cachedEnd = entry.getCachedEnd(position);
+                if (cachedEnd > position) {
+                    if (reader == null) {
+                        reader = entry.openReader();
+                    }
+                    reader.seek(position);
+                    int read = reader.read(buffer, 0, (int) Math.min(buffer.length, Math.min(remaining, cachedEnd - position)));
+                    if (read < 0) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                    position += read;
+                    remaining -= read;
+                    mStore.onHit(read);
+                    continue;
+                }
+
+                long gapEnd = entry.getNextCachedStart(position);
+                if (end >= 0 && (gapEnd < 0 || gapEnd > end + 1)) {
+                    gapEnd = end + 1;
+                }
+                long fetchStart = System.nanoTime();
+                if (origin == null || origin.mPosition != position) {
+                    if (origin != null) {
+                        origin.close();
+                    }
+                    origin = new Origin(request.mUrl, position, gapEnd);
+                }
+                int read = origin.mStream.read(buffer, 0, (int) Math.min(buffer.length,
+                        Math.min(remaining, gapEnd >= 0 ? gapEnd - position : Long.MAX_VALUE)));
+                if (read < 0) {
+                    if (length < 0) {
+                        entry.setInfo(position, null);
+                    }
+                    break;
+                }
+                mStore.onMiss(read);
+                if (writer == null) {
+                    writer = entry.openWriter();
+                }
+                entry.write(writer, position, buffer, 0, read);
+                long writeStart = System.nanoTime();
+                out.write(buffer, 0, read);
+                if (sampling) {
+                    long now = System.nanoTime();
+                    if (now - writeStart > PLAYER_STALL_NANOS) {
+                        sampling = false;
+                    } else {
+                        sampleBytes += read;
+                        sampleNanos += now - fetchStart;
+                    }
+                }
+                origin.mPosition += read;
+                position += read;
+                remaining -= read;
+            }
+            out.flush();
+        } finally {
+            BandwidthMeter.get().onTransfer(sampleBytes, TimeUnit.NANOSECONDS.toMillis(sampleNanos));
+            if (origin != null) {
+                origin.close();
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection to the origin positioned at the start of a missing range.
+     */
+    private static class Origin {
+
+        private final HttpURLConnection mConnection;
+        private final InputStream mStream;
+        private final long mLength;
+        private long mPosition;
+
+        /**
+         * @param to exclusive end of the range, or -1 to read to the end
+         */
+        Origin(@NonNull String url, long from, long to) throws IOException {
+            mConnection = (HttpURLConnection) new URL(url).openConnection();
+            mConnection.setConnectTimeout(TIMEOUT);
+            mConnection.setReadTimeout(TIMEOUT);
+            if (from > 0 || to > 0) {
+                mConnection.setRequestProperty("Range", "bytes=" + from + "-" + (to > 0 ? String.valueOf(to - 1) : ""));
+            }
+            int code = mConnection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                mConnection.disconnect();
+                throw new IOException("Origin responded " + code + " for " + url);
+            }
+            mStream = mConnection.getInputStream();
+            mLength = length(mConnection, code, from);
+            if (from > 0 && code == HttpURLConnection.HTTP_OK) {
+                // The origin ignored the range, skip up to the requested offset
+                long skipped = 0;
+                while (skipped < from) {
+                    long n = mStream.skip(from - skipped);
+                    if (n <= 0) {
+                        close();
+                        throw new IOException("Unable to skip to " + from + " in " + url);
+                    }
+                    skipped += n;
+                }
+            }
+            mPosition = from;
+        }
+
+        void close() {
+            try {
+                mStream.close();
+            } catch (IOException ignored) {
+            }
+            mConnection.disconnect();
+        }
+
+        private static long length(@NonNull HttpURLConnection connection, int code, long from) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            if (contentRange != null) {
+                Matcher matcher = CONTENT_RANGE.matcher(contentRange);
+                if (matcher.find() && !matcher.group(3).equals("*")) {
+                    return Long.parseLong(matcher.group(3));
+                }
+            }
+            String contentLength = connection.getHeaderField("Content-Length");
+            if (contentLength != null) {
+                try {
+                    long length = Long.parseLong(contentLength.trim());
+                    return code == HttpURLConnection.HTTP_OK ? length : from + length;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static void writeHeader(@NonNull OutputStream out, @NonNull String status, @NonNull String headers) throws IOException {
+        String response = "HTTP/1.1 " + status + "\r\n" + headers + "Connection: close\r\n\r\n";
+        out.write(response.getBytes("ISO-8859-1"));
+    }
+
+    static class Request {
+
+        private String mTarget;
+        private String mUrl;
+        private boolean mHead;
+        private boolean mHasRange;
+        private long mRangeStart;
+        private long mRangeEnd = -1;
+
+        /**
+         * @return the request, or null if it is malformed, larger than {@link #MAX_HEADER_BYTES}
+         * or not complete by {@code deadlineNanos}
+         */
+        @Nullable
+        static Request read(@NonNull InputStream in, long deadlineNanos) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (sb.length() == MAX_HEADER_BYTES || System.nanoTime() - deadlineNanos > 0) {
+                    return null;
+                }
+                sb.append((char) c);
+                int length = sb.length();
+                if (length >= 4 && sb.charAt(length - 1) == '\n' && sb.charAt(length - 2) == '\r'
+                        && sb.charAt(length - 3) == '\n' && sb.charAt(length - 4) == '\r') {
+                    break;
+                }
+            }
+            String[] lines = sb.toString().split("\r\n");
+            if (lines.length == 0) {
+                return null;
+            }
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length < 2 || requestLine[1].length() < 2) {
+                return null;
+            }
+            Request request = new Request();
+            request.mHead = requestLine[0].equals("HEAD");
+            request.mTarget = requestLine[1];
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i];
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.US).equals("range")) {
+                    Matcher matcher = RANGE.matcher(line.substring(colon + 1).trim());
+                    if (matcher.matches()) {
+                        request.mHasRange = true;
+                        try {
+                            request.mRangeStart = Long.parseLong(matcher.group(1));
+                            if (!matcher.group(2).isEmpty()) {
+                                request.mRangeEnd = Long.parseLong(matcher.group(2));
+                            }
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        if (request.mRangeEnd >= 0 && request.mRangeEnd < request.mRangeStart) {
+                            return null;
+                        }
+                    }
+                }
+            }
+            return request;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+public class HttpCacheStats {
+
+    private final long mMaxBytes;
+    private final long mSizeBytes;
+    private final int mEntryCount;
+    private final long mRequestCount;
+    private final long mHitBytes;
+    private final long mMissBytes;
+    private final long mEvictionCount;
+    private final long mEvictedBytes;
+
+    HttpCacheStats(long maxBytes, long sizeBytes, int entryCount, long requestCount, long hitBytes, long missBytes,
+                   long evictionCount, long evictedBytes) {
+        mMaxBytes = maxBytes;
+        mSizeBytes = sizeBytes;
+        mEntryCount = entryCount;
+        mRequestCount = requestCount;
+        mHitBytes = hitBytes;
+        mMissBytes = missBytes;
+        mEvictionCount = evictionCount;
+        mEvictedBytes = evictedBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Bytes served to the player from disk.
+     */
+    public long getHitBytes() {
+        return mHitBytes;
+    }
+
+    /**
+     * Bytes fetched from the network.
+     */
+    public long getMissBytes() {
+        return mMissBytes;
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    public float getHitRatio() {
+        long total = mHitBytes + mMissBytes;
+        return total == 0 ? 0f : (float) mHitBytes / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "size=%d/%d entries=%d requests=%d hit=%d miss=%d evictions=%d evicted=%d",
+                mSizeBytes, mMaxBytes, mEntryCount, mRequestCount, mHitBytes, mMissBytes, mEvictionCount, mEvictedBytes);
+    }
+}
@@ -0,0 +1,411 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded on-disk LRU of progressively downloaded media. Each entry is a sparse data file holding
+ * the byte ranges fetched so far at their offset in the resource, indexed by a span tree that is
+ * persisted with the resource length and mime type in a meta file. Entries in use by a proxy
+ * connection are never evicted.
+ */
+class HttpCacheStore {
+
+    private static final String TAG = "HttpCacheStore";
+    private static final String DATA = ".data";
+    private static final String META = ".meta";
+    private static final int META_VERSION = 2;
+
+    interface Listener {
+
+        void onSpansChanged(@NonNull String key);
+    }
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, .75f, true);
+    private volatile Listener mListener;
+    private boolean mLoaded;
+    private long mSize;
+    private long mRequestCount;
+    private long mHitBytes;
+    private long mMissBytes;
+    private long mEvictionCount;
+    private long mEvictedBytes;
+
+    HttpCacheStore(@NonNull File directory, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    @NonNull
+    synchronized Entry acquire(@NonNull String url) {
+        load();
+        mRequestCount++;
+        String key = keyOf(url);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(this, key);
+            mEntries.put(key, entry);
+        } else if (entry.mDataFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            entry.mDataFile.setLastModified(System.currentTimeMillis());
+        }
+        entry.mUseCount++;
+        return entry;
+    }
+
+    synchronized void release(@NonNull Entry entry) {
+        entry.mUseCount--;
+        entry.saveMeta();
+        trim();
+    }
+
+    @Nullable
+    synchronized CacheCoverage getCoverage(@NonNull String url) {
+        load();
+        Entry entry = mEntries.get(keyOf(url));
+        return entry != null ? entry.getCoverage() : null;
+    }
+
+    synchronized void clear() {
+        load();
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.mUseCount == 0) {
+                mSize -= entry.getCachedBytes();
+                entry.delete();
+                it.remove();
+            }
+        }
+    }
+
+    @NonNull
+    synchronized HttpCacheStats getStats() {
+        return new HttpCacheStats(mMaxBytes, mSize, mEntries.size(), mRequestCount, mHitBytes, mMissBytes,
+                mEvictionCount, mEvictedBytes);
+    }
+
+    synchronized void onHit(long bytes) {
+        mHitBytes += bytes;
+    }
+
+    synchronized void onMiss(long bytes) {
+        mMissBytes += bytes;
+    }
+
+    private synchronized void onWritten(long bytes) {
+        mSize += bytes;
+        if (mSize > mMaxBytes) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (mSize > mMaxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.mUseCount > 0) {
+                continue;
+            }
+            long cached = entry.getCachedBytes();
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "evict: " + entry.mKey + " " + cached);
+            }
+            mSize -= cached;
+            mEvictionCount++;
+            mEvictedBytes += cached;
+            entry.delete();
+            it.remove();
+        }
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create cache directory " + mDirectory);
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> data = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(DATA)) {
+                data.add(file);
+            }
+        }
+        File[] sorted = data.toArray(new File[data.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : sorted) {
+            String key = file.getName().substring(0, file.getName().length() - DATA.length());
+            Entry entry = new Entry(this, key);
+            if (!entry.readMeta()) {
+                // Without its index the content of a sparse file cannot be trusted
+                entry.delete();
+                continue;
+            }
+            mSize += entry.getCachedBytes();
+            mEntries.put(key, entry);
+        }
+        trim();
+    }
+
+    @NonNull
+    static String keyOf(@NonNull String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    static class Entry {
+
+        private final HttpCacheStore mStore;
+        private final String mKey;
+        private final File mDataFile;
+        private final File mMetaFile;
+        // Cached byte ranges, start -> exclusive end, never overlapping nor adjacent
+        private final TreeMap<Long, Long> mSpans = new TreeMap<>();
+        private volatile long mLength = -1;
+        private long mCachedBytes;
+        private String mMime;
+        private int mUseCount;
+        private boolean mDirty;
+
+        private Entry(@NonNull HttpCacheStore store, @NonNull String key) {
+            mStore = store;
+            mKey = key;
+            mDataFile = new File(store.mDirectory, key + DATA);
+            mMetaFile = new File(store.mDirectory, key + META);
+        }
+
+        /**
+         * Length of the whole resource, or -1 if not known yet.
+         */
+        long getLength() {
+            return mLength;
+        }
+
+        synchronized long getCachedBytes() {
+            return mCachedBytes;
+        }
+
+        /**
+         * End of the cached bytes contiguous to {@code position}, or {@code position} if that
+         * byte is not cached.
+         */
+        synchronized long getCachedEnd(long position) {
+            Map.Entry<Long, Long> span = mSpans.floorEntry(position);
+            return span != null && span.getValue() > position ? span.getValue() : position;
+        }
+
+        /**
+         * Start of the first cached span after {@code position}, or -1 if there is none.
+         */
+        synchronized long getNextCachedStart(long position) {
+            Long start = mSpans.higherKey(position);
+            return start != null ? start : -1;
+        }
+
+        @Nullable
+        synchronized String getMime() {
+            return mMime;
+        }
+
+        synchronized void setInfo(long length, @Nullable String mime) {
+            if (length == mLength && (mime == null || mime.equals(mMime))) {
+                return;
+            }
+            if (length >= 0) {
+                mLength = length;
+            }
+            if (mime != null) {
+                mMime = mime;
+            }
+            mDirty = true;
+            saveMeta();
+        }
+
+        @NonNull
+        synchronized CacheCoverage getCoverage() {
+            long[] spans = new long[mSpans.size() * 2];
+            int i = 0;
+            for (Map.Entry<Long, Long> span : mSpans.entrySet()) {
+                spans[i++] = span.getKey();
+                spans[i++] = span.getValue();
+            }
+            return new CacheCoverage(mLength, spans, mCachedBytes);
+        }
+
+        @NonNull
+        RandomAccessFile openReader() throws IOException {
+            return new RandomAccessFile(mDataFile, "r");
+        }
+
+        /**
+         * Several connections may write at once, each with its own file, since the bytes at a
+         * given offset are the same whoever fetched them.
+         */
+        @NonNull
+        RandomAccessFile openWriter() throws IOException {
+            return new RandomAccessFile(mDataFile, "rw");
+        }
+
+        void write(@NonNull RandomAccessFile writer, long position, @NonNull byte[] buffer, int offset, int count) throws IOException {
+            writer.seek(position);
+            writer.write(buffer, offset, count);
+            long added = addSpan(position, position + count);
+            if (added > 0) {
+                mStore.onWritten(added);
+                Listener listener = mStore.mListener;
+                if (listener != null) {
+                    listener.onSpansChanged(mKey);
+                }
+            }
+        }
+
+        private synchronized long addSpan(long start, long end) {
+            long before = mCachedBytes;
+            Map.Entry<Long, Long> lower = mSpans.floorEntry(start);
+            if (lower != null && lower.getValue() >= start) {
+                start = lower.getKey();
+                end = Math.max(end, lower.getValue());
+                mCachedBytes -= lower.getValue() - lower.getKey();
+                mSpans.remove(lower.getKey());
+            }
+            Map.Entry<Long, Long> next = mSpans.ceilingEntry(start);
+            while (next != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                mCachedBytes -= next.getValue() - next.getKey();
+                mSpans.remove(next.getKey());
+                next = mSpans.ceilingEntry(start);
+            }
+            mSpans.put(start, end);
+            mCachedBytes += end - start;
+            mDirty = true;
+            return mCachedBytes - before;
+        }
+
+        private synchronized boolean readMeta() {
+            if (!mMetaFile.exists()) {
+                return false;
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new FileInputStream(mMetaFile));
+                if (in.readInt() != META_VERSION) {
+                    return false;
+                }
+                mLength = in.readLong();
+                String mime = in.readUTF();
+                mMime = mime.isEmpty() ? null : mime;
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long start = in.readLong();
+                    long end = in.readLong();
+                    mSpans.put(start, end);
+                    mCachedBytes += end - start;
+                }
+                return true;
+            } catch (IOException e) {
+                mLength = -1;
+                mSpans.clear();
+                mCachedBytes = 0;
+                return false;
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        synchronized void saveMeta() {
+            if (!mDirty) {
+                return;
+            }
+            mDirty = false;
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new FileOutputStream(mMetaFile));
+                out.writeInt(META_VERSION);
+                out.writeLong(mLength);
+                out.writeUTF(mMime != null ? mMime : "");
+                out.writeInt(mSpans.size());
+                for (Map.Entry<Long, Long> span : mSpans.entrySet()) {
+                    out.writeLong(span.getKey());
+                    out.writeLong(span.getValue());
+                }
+            } catch (IOException e) {
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "saveMeta: error", e);
+                }
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        private void delete() {
+            //noinspection ResultOfMethodCallIgnored
+            mDataFile.delete();
+            //noinspection ResultOfMethodCallIgnored
+            mMetaFile.delete();
+        }
+    }
+}
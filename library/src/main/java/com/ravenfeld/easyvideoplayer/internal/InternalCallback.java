@@ -1,5 +1,6 @@
 package com.ravenfeld.easyvideoplayer.internal;
 
+import android.net.Uri;
 
 public interface InternalCallback {
 
@@ -8,4 +9,6 @@ public interface InternalCallback {
     void onFullScreenExit(PlayerView player);
 
     void onRestoreInstance(PlayerView player);
-}
\ No newline at end of file
+
+    void onQueueAdvanced(PlayerView player, Uri source);
+}
@@ -0,0 +1,277 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+import com.ravenfeld.easyvideoplayer.PlaybackEngine;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+/**
+ * Default engine, backed by a MediaPlayer from the {@link MediaPlayerPool} which gets it back on
+ * release, or once the engine is collected if it was never released.
+ */
+public class MediaPlayerEngine implements PlaybackEngine, MediaPlayer.OnPreparedListener,
+        MediaPlayer.OnBufferingUpdateListener, MediaPlayer.OnSeekCompleteListener, MediaPlayer.OnCompletionListener,
+        MediaPlayer.OnVideoSizeChangedListener, MediaPlayer.OnErrorListener, MediaPlayer.OnInfoListener {
+
+    private static final String TAG = "MediaPlayerEngine";
+
+    public static final Factory FACTORY = new Factory() {
+        @NonNull
+        @Override
+        public PlaybackEngine create(@NonNull Context context) {
+            return new MediaPlayerEngine();
+        }
+    };
+
+    private final MediaPlayer mPlayer;
+    private volatile Listener mListener;
+
+    MediaPlayerEngine() {
+        mPlayer = MediaPlayerPool.get().acquire(this);
+        Relay relay = new Relay(this);
+        mPlayer.setOnPreparedListener(relay);
+        mPlayer.setOnBufferingUpdateListener(relay);
+        mPlayer.setOnSeekCompleteListener(relay);
+        mPlayer.setOnCompletionListener(relay);
+        mPlayer.setOnVideoSizeChangedListener(relay);
+        mPlayer.setOnErrorListener(relay);
+        mPlayer.setOnInfoListener(relay);
+        mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+    }
+
+    @Override
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void setDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        mPlayer.setDataSource(context, uri);
+    }
+
+    @Override
+    public void setDataSource(@NonNull String url) throws IOException {
+        mPlayer.setDataSource(url);
+    }
+
+    @Override
+    public void setDataSource(@NonNull FileDescriptor fd, long offset, long length) throws IOException {
+        mPlayer.setDataSource(fd, offset, length);
+    }
+
+    @Override
+    public void prepareAsync() {
+        mPlayer.prepareAsync();
+    }
+
+    @Override
+    public void setSurface(@Nullable Surface surface) {
+        mPlayer.setSurface(surface);
+    }
+
+    @Override
+    public void start() {
+        mPlayer.start();
+    }
+
+    @Override
+    public void pause() {
+        mPlayer.pause();
+    }
+
+    @Override
+    public void stop() {
+        mPlayer.stop();
+    }
+
+    @Override
+    public void seekTo(int position) {
+        mPlayer.seekTo(position);
+    }
+
+    @Override
+    public void reset() {
+        mPlayer.reset();
+    }
+
+    @Override
+    public void release() {
+        mListener = null;
+        MediaPlayerPool.get().recycle(mPlayer);
+    }
+
+    /**
+     * Starts {@code next}, which must be prepared, as soon as this engine completes. See
+     * MediaPlayer.setNextMediaPlayer().
+     */
+    void setNext(@Nullable MediaPlayerEngine next) {
+        try {
+            mPlayer.setNextMediaPlayer(next != null ? next.mPlayer : null);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "setNext: error", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mPlayer.isPlaying();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mPlayer.getCurrentPosition();
+    }
+
+    @Override
+    public int getDuration() {
+        return mPlayer.getDuration();
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return mPlayer.getVideoWidth();
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return mPlayer.getVideoHeight();
+    }
+
+    @Override
+    public void setVolume(float leftVolume, float rightVolume) {
+        mPlayer.setVolume(leftVolume, rightVolume);
+    }
+
+    @Override
+    public void onPrepared(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onPrepared(this);
+        }
+    }
+
+    @Override
+    public void onBufferingUpdate(MediaPlayer mp, int percent) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onBufferingUpdate(this, percent);
+        }
+    }
+
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onSeekComplete(this);
+        }
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onCompletion(this);
+        }
+    }
+
+    @Override
+    public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onVideoSizeChanged(this, width, height);
+        }
+    }
+
+    @Override
+    public boolean onError(MediaPlayer mp, int what, int extra) {
+        Listener listener = mListener;
+        return listener != null && listener.onError(this, what, extra);
+    }
+
+    @Override
+    public boolean onInfo(MediaPlayer mp, int what, int extra) {
+        Listener listener = mListener;
+        return listener != null && listener.onInfo(this, what, extra);
+    }
+
+    /**
+     * Forwards the events of the player to the engine without the player holding on to it, the
+     * pool detects an engine dropped without release() by its collection.
+     */
+    private static class Relay implements MediaPlayer.OnPreparedListener, MediaPlayer.OnBufferingUpdateListener,
+            MediaPlayer.OnSeekCompleteListener, MediaPlayer.OnCompletionListener, MediaPlayer.OnVideoSizeChangedListener,
+            MediaPlayer.OnErrorListener, MediaPlayer.OnInfoListener {
+
+        private final WeakReference<MediaPlayerEngine> mEngine;
+
+        Relay(@NonNull MediaPlayerEngine engine) {
+            mEngine = new WeakReference<>(engine);
+        }
+
+        @Override
+        public void onPrepared(MediaPlayer mp) {
+            MediaPlayerEngine engine = mEngine.get();
+            if (engine != null) {
+                engine.onPrepared(mp);
+            }
+        }
+
+        @Override
+        public void onBufferingUpdate(MediaPlayer mp, int percent) {
+            MediaPlayerEngine engine = mEngine.get();
+            if (engine != null) {
+                engine.onBufferingUpdate(mp, percent);
+            }
+        }
+
+        @Override
+        public void onSeekComplete(MediaPlayer mp) {
+            MediaPlayerEngine engine = mEngine.get();
+            if (engine != null) {
+                engine.onSeekComplete(mp);
+            }
+        }
+
+        @Override
+        public void onCompletion(MediaPlayer mp) {
+            MediaPlayerEngine engine = mEngine.get();
+            if (engine != null) {
+                engine.onCompletion(mp);
+            }
+        }
+
+        @Override
+        public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+            MediaPlayerEngine engine = mEngine.get();
+            if (engine != null) {
+                engine.onVideoSizeChanged(mp, width, height);
+            }
+        }
+
+        @Override
+        public boolean onError(MediaPlayer mp, int what, int extra) {
+            MediaPlayerEngine engine = mEngine.get();
+            return engine != null && engine.onError(mp, what, extra);
+        }
+
+        @Override
+        public boolean onInfo(MediaPlayer mp, int what, int extra) {
+            MediaPlayerEngine engine = mEngine.get();
+            return engine != null && engine.onInfo(mp, what, extra);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.media.MediaPlayer;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of idle MediaPlayer instances shared by every PlayerView. A player is reset before
+ * it goes back to the pool, and players whose owner was garbage collected without returning them
+ * are reported and released. For that the player must not reference its owner, its listeners
+ * have to go through a weak indirection.
+ */
+public class MediaPlayerPool {
+
+    private static final String TAG = "MediaPlayerPool";
+    private static final int DEFAULT_MAX_IDLE = 2;
+
+    private static final MediaPlayerPool INSTANCE = new MediaPlayerPool();
+
+    private final ArrayDeque<MediaPlayer> mIdle = new ArrayDeque<>();
+    private final Map<MediaPlayer, OwnerReference> mInUse = new IdentityHashMap<>();
+    private final ReferenceQueue<Object> mCollectedOwners = new ReferenceQueue<>();
+    private int mMaxIdle = DEFAULT_MAX_IDLE;
+    private long mCreated;
+    private long mReused;
+    private long mDestroyed;
+    private long mLeaked;
+
+    public static MediaPlayerPool get() {
+        return INSTANCE;
+    }
+
+    private MediaPlayerPool() {
+    }
+
+    public synchronized void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("The pool size cannot be negative.");
+        }
+        mMaxIdle = maxIdle;
+        while (mIdle.size() > mMaxIdle) {
+            destroy(mIdle.pollLast());
+        }
+    }
+
+    /**
+     * Creates idle players up to {@code count}, bounded by the pool size, so that the next views
+     * do not pay for the native allocation.
+     */
+    public synchronized void prewarm(int count) {
+        int target = Math.min(count, mMaxIdle);
+        while (mIdle.size() < target) {
+            mIdle.push(new MediaPlayer());
+            mCreated++;
+        }
+    }
+
+    /**
+     * Releases every idle player.
+     *
+     * @return the number of players released
+     */
+    synchronized int trimIdle() {
+        int count = mIdle.size();
+        while (!mIdle.isEmpty()) {
+            destroy(mIdle.poll());
+        }
+        return count;
+    }
+
+    @NonNull
+    synchronized MediaPlayer acquire(@NonNull Object owner) {
+        checkLeaks();
+        MediaPlayer player = mIdle.poll();
+        if (player != null) {
+            mReused++;
+        } else {
+            player = new MediaPlayer();
+            mCreated++;
+        }
+        mInUse.put(player, new OwnerReference(owner, player, mCollectedOwners));
+        return player;
+    }
+
+    /**
+     * Resets {@code player} and keeps it for a later {@link #acquire(Object)} if the pool has room,
+     * releases it otherwise. Blocking, called from the prepare thread.
+     */
+    void recycle(@NonNull MediaPlayer player) {
+        synchronized (this) {
+            OwnerReference owner = mInUse.remove(player);
+            if (owner == null) {
+                return;
+            }
+            owner.clear();
+        }
+        clearListeners(player);
+        boolean reusable;
+        try {
+            player.reset();
+            player.setSurface(null);
+            reusable = true;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && mIdle.size() < mMaxIdle) {
+                mIdle.push(player);
+                return;
+            }
+        }
+        destroy(player);
+    }
+
+    @NonNull
+    public synchronized MediaPlayerPoolStats getStats() {
+        checkLeaks();
+        return new MediaPlayerPoolStats(mMaxIdle, mIdle.size(), mInUse.size(), mCreated, mReused, mDestroyed, mLeaked);
+    }
+
+    /**
+     * Takes back the players whose owner was collected, they are released on the prepare thread.
+     */
+    private synchronized void checkLeaks() {
+        OwnerReference owner;
+        while ((owner = (OwnerReference) mCollectedOwners.poll()) != null) {
+            final MediaPlayer player = owner.mPlayer;
+            if (mInUse.get(player) != owner) {
+                continue;
+            }
+            Log.w(TAG, "A MediaPlayer outlived its engine, release the view when it is not needed anymore");
+            mInUse.remove(player);
+            mLeaked++;
+            PreparePipeline.execute(new Runnable() {
+                @Override
+                public void run() {
+                    clearListeners(player);
+                    destroy(player);
+                }
+            });
+        }
+    }
+
+    private void destroy(@NonNull MediaPlayer player) {
+        try {
+            player.release();
+        } catch (Throwable ignored) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "release: error", ignored);
+            }
+        }
+        synchronized (this) {
+            mDestroyed++;
+        }
+    }
+
+    private static class OwnerReference extends PhantomReference<Object> {
+
+        private final MediaPlayer mPlayer;
+
+        OwnerReference(@NonNull Object owner, @NonNull MediaPlayer player, @NonNull ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            mPlayer = player;
+        }
+    }
+
+    private static void clearListeners(@NonNull MediaPlayer player) {
+        player.setOnPreparedListener(null);
+        player.setOnBufferingUpdateListener(null);
+        player.setOnSeekCompleteListener(null);
+        player.setOnCompletionListener(null);
+        player.setOnVideoSizeChangedListener(null);
+        player.setOnErrorListener(null);
+        player.setOnInfoListener(null);
+    }
+}
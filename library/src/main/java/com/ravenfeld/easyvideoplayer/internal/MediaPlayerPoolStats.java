@@ -0,0 +1,64 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+public class MediaPlayerPoolStats {
+
+    private final int mMaxIdle;
+    private final int mIdle;
+    private final int mInUse;
+    private final long mCreated;
+    private final long mReused;
+    private final long mDestroyed;
+    private final long mLeaked;
+
+    MediaPlayerPoolStats(int maxIdle, int idle, int inUse, long created, long reused, long destroyed, long leaked) {
+        mMaxIdle = maxIdle;
+        mIdle = idle;
+        mInUse = inUse;
+        mCreated = created;
+        mReused = reused;
+        mDestroyed = destroyed;
+        mLeaked = leaked;
+    }
+
+    public int getMaxIdle() {
+        return mMaxIdle;
+    }
+
+    public int getIdle() {
+        return mIdle;
+    }
+
+    public int getInUse() {
+        return mInUse;
+    }
+
+    public long getCreated() {
+        return mCreated;
+    }
+
+    public long getReused() {
+        return mReused;
+    }
+
+    public long getDestroyed() {
+        return mDestroyed;
+    }
+
+    /**
+     * Players whose view was garbage collected without releasing them.
+     */
+    public long getLeaked() {
+        return mLeaked;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "idle=%d/%d inUse=%d created=%d reused=%d destroyed=%d leaked=%d",
+                mIdle, mMaxIdle, mInUse, mCreated, mReused, mDestroyed, mLeaked);
+    }
+}
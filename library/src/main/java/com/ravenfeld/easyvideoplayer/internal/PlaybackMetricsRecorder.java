@@ -0,0 +1,256 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.PlaybackMetricsListener;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Turns the events of a PlayerView into playback metrics for the registered listeners. Used on
+ * the main thread only, nothing is measured while no listener is registered.
+ */
+public class PlaybackMetricsRecorder {
+
+    /**
+     * Time source of the measurements, replaced by the tests.
+     */
+    interface Clock {
+
+        long elapsedRealtime();
+
+        /**
+         * CPU time of the process in milliseconds.
+         */
+        long elapsedCpuTime();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public long elapsedCpuTime() {
+            return Process.getElapsedCpuTime();
+        }
+    };
+
+    private static final long FRAME_RATE_WINDOW_MS = 1000;
+    private static final CopyOnWriteArrayList<PlaybackMetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final PlayerView mPlayer;
+    private final Clock mClock;
+    private long mSourceSetAt;
+    private boolean mFirstFramePending;
+    private long mRebufferStartedAt;
+    private long mSeekStartedAt;
+    private long mPlayingSince;
+    private long mFrameWindowStartedAt;
+    private int mFrameWindowCount;
+    private boolean mVideoRendered = true;
+    private long mCpuSegmentStartedAt;
+    private long mCpuSegmentStartCpuMs;
+
+    public static void addListener(@NonNull PlaybackMetricsListener listener) {
+        LISTENERS.addIfAbsent(listener);
+    }
+
+    public static void removeListener(@NonNull PlaybackMetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    static void onMemoryTrimmed(int level, int releasedInstances, long releasedBytes) {
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onMemoryTrimmed(level, releasedInstances, releasedBytes);
+        }
+    }
+
+    PlaybackMetricsRecorder(@NonNull PlayerView player) {
+        this(player, SYSTEM_CLOCK);
+    }
+
+    PlaybackMetricsRecorder(PlayerView player, @NonNull Clock clock) {
+        mPlayer = player;
+        mClock = clock;
+    }
+
+    void onSourceSet() {
+        mSourceSetAt = mClock.elapsedRealtime();
+        mFirstFramePending = true;
+    }
+
+    /**
+     * A prepare without a new source, e.g. after an error, starts the clock again.
+     */
+    void onPrepareRequested() {
+        if (!mFirstFramePending) {
+            onSourceSet();
+        }
+    }
+
+    void onFrameRendered(@Nullable PrepareTimings timings) {
+        if (LISTENERS.isEmpty()) {
+            mFirstFramePending = false;
+            return;
+        }
+        long now = mClock.elapsedRealtime();
+        if (mFirstFramePending) {
+            mFirstFramePending = false;
+            long startupMs = now - mSourceSetAt;
+            long prepareMs = timings != null ? timings.getTotalMs() : -1;
+            for (PlaybackMetricsListener listener : LISTENERS) {
+                listener.onFirstFrame(mPlayer, startupMs, prepareMs);
+            }
+        }
+        if (mPlayingSince == 0) {
+            return;
+        }
+        if (mFrameWindowStartedAt == 0) {
+            mFrameWindowStartedAt = now;
+            mFrameWindowCount = 0;
+            return;
+        }
+        mFrameWindowCount++;
+        long elapsed = now - mFrameWindowStartedAt;
+        if (elapsed >= FRAME_RATE_WINDOW_MS) {
+            float fps = mFrameWindowCount * 1000f / elapsed;
+            for (PlaybackMetricsListener listener : LISTENERS) {
+                listener.onFrameRate(mPlayer, fps);
+            }
+            mFrameWindowStartedAt = now;
+            mFrameWindowCount = 0;
+        }
+    }
+
+    void onRebufferStart() {
+        if (mRebufferStartedAt != 0) {
+            return;
+        }
+        mRebufferStartedAt = mClock.elapsedRealtime();
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onRebufferStart(mPlayer);
+        }
+    }
+
+    void onRebufferEnd() {
+        if (mRebufferStartedAt == 0) {
+            return;
+        }
+        long durationMs = mClock.elapsedRealtime() - mRebufferStartedAt;
+        mRebufferStartedAt = 0;
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onRebufferEnd(mPlayer, durationMs);
+        }
+    }
+
+    void onSeekRequested() {
+        if (mSeekStartedAt == 0) {
+            mSeekStartedAt = mClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Called once no seek is left in flight.
+     */
+    void onSeekComplete() {
+        if (mSeekStartedAt == 0) {
+            return;
+        }
+        long latencyMs = mClock.elapsedRealtime() - mSeekStartedAt;
+        mSeekStartedAt = 0;
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onSeekComplete(mPlayer, latencyMs);
+        }
+    }
+
+    /**
+     * @param gapMs    time from the end of a queued source to the first frame of the next one
+     * @param prepared whether the next source was prepared ahead
+     */
+    void onTransition(long gapMs, boolean prepared) {
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onTransition(mPlayer, gapMs, prepared);
+        }
+    }
+
+    /**
+     * @param latencyMs time from the texture leaving the destroyed view to its first draw in the
+     *                  recreated one
+     */
+    void onSessionRestored(long latencyMs) {
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onSessionRestored(mPlayer, latencyMs);
+        }
+    }
+
+    void onPlaying(boolean playing) {
+        long now = mClock.elapsedRealtime();
+        if (playing) {
+            if (mPlayingSince == 0) {
+                mPlayingSince = now;
+                mFrameWindowStartedAt = 0;
+                startCpuSegment(now);
+            }
+            return;
+        }
+        if (mPlayingSince == 0) {
+            return;
+        }
+        endCpuSegment(now);
+        long playedMs = now - mPlayingSince;
+        mPlayingSince = 0;
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onPlaybackTime(mPlayer, playedMs);
+        }
+    }
+
+    /**
+     * Splits the CPU time measured while playing between the video rendered and audio only.
+     */
+    void onVideoRendered(boolean rendered) {
+        if (rendered == mVideoRendered) {
+            return;
+        }
+        long now = mClock.elapsedRealtime();
+        endCpuSegment(now);
+        mVideoRendered = rendered;
+        startCpuSegment(now);
+    }
+
+    private void startCpuSegment(long now) {
+        if (mPlayingSince == 0 || LISTENERS.isEmpty()) {
+            mCpuSegmentStartedAt = 0;
+            return;
+        }
+        mCpuSegmentStartedAt = now;
+        mCpuSegmentStartCpuMs = mClock.elapsedCpuTime();
+    }
+
+    private void endCpuSegment(long now) {
+        if (mCpuSegmentStartedAt == 0) {
+            return;
+        }
+        long playedMs = now - mCpuSegmentStartedAt;
+        long cpuMs = mClock.elapsedCpuTime() - mCpuSegmentStartCpuMs;
+        mCpuSegmentStartedAt = 0;
+        for (PlaybackMetricsListener listener : LISTENERS) {
+            listener.onCpuTime(mPlayer, mVideoRendered, playedMs, cpuMs);
+        }
+    }
+
+    /**
+     * Drops the measurements in progress, the player was reset.
+     */
+    void reset() {
+        onRebufferEnd();
+        onPlaying(false);
+        mFirstFramePending = false;
+        mSeekStartedAt = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.graphics.SurfaceTexture;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+import com.ravenfeld.easyvideoplayer.PlaybackEngine;
+
+/**
+ * Prepared engine, surface texture and pending commands of a player whose view is destroyed by a
+ * configuration change, kept for the view recreated with the same key. The engine events
+ * received meanwhile are recorded and replayed to that view. Sessions not taken within
+ * {@link #RETAIN_TIMEOUT_MS} are released. Used on the main thread only.
+ */
+class PlaybackSession implements PlaybackEngine.Listener {
+
+    private static final String TAG = "PlaybackSession";
+    private static final long RETAIN_TIMEOUT_MS = 10000;
+
+    private static final SparseArray<PlaybackSession> SESSIONS = new SparseArray<>();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    final PlaybackEngine mEngine;
+    final SurfaceTexture mSurfaceTexture;
+    final Surface mSurface;
+    final Uri mSource;
+    final CommandQueue mCommandQueue;
+    @Nullable
+    final String mCoverageUrl;
+    @Nullable
+    final PrepareTimings mPrepareTimings;
+    final boolean mWasPlaying;
+    /**
+     * When the texture left the destroyed view, in the elapsedRealtime() base.
+     */
+    final long mDetachedAt;
+    int mVideoWidth;
+    int mVideoHeight;
+    int mSeeksCompleted;
+    boolean mCompleted;
+    boolean mFailed;
+
+    private final int mKey;
+    private final Runnable mExpire = new Runnable() {
+        @Override
+        public void run() {
+            if (SESSIONS.get(mKey) == PlaybackSession.this) {
+                SESSIONS.remove(mKey);
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "expired " + mKey);
+                }
+                release();
+            }
+        }
+    };
+
+    PlaybackSession(int key, @NonNull PlaybackEngine engine, @NonNull SurfaceTexture surfaceTexture,
+                    @NonNull Surface surface, @NonNull Uri source, @NonNull CommandQueue commandQueue,
+                    @Nullable String coverageUrl, @Nullable PrepareTimings prepareTimings, boolean wasPlaying,
+                    int videoWidth, int videoHeight, long detachedAt) {
+        mKey = key;
+        mEngine = engine;
+        mSurfaceTexture = surfaceTexture;
+        mSurface = surface;
+        mSource = source;
+        mCommandQueue = commandQueue;
+        mCoverageUrl = coverageUrl;
+        mPrepareTimings = prepareTimings;
+        mWasPlaying = wasPlaying;
+        mVideoWidth = videoWidth;
+        mVideoHeight = videoHeight;
+        mDetachedAt = detachedAt;
+    }
+
+    /**
+     * Keeps {@code session} until {@link #take(int)}, replacing the one retained under the same key.
+     */
+    static void retain(@NonNull PlaybackSession session) {
+        PlaybackSession previous = SESSIONS.get(session.mKey);
+        if (previous != null) {
+            MAIN_HANDLER.removeCallbacks(previous.mExpire);
+            previous.release();
+        }
+        SESSIONS.put(session.mKey, session);
+        session.mEngine.setListener(session);
+        MAIN_HANDLER.postDelayed(session.mExpire, RETAIN_TIMEOUT_MS);
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, "retain " + session.mKey + " " + session.mSource);
+        }
+    }
+
+    @Nullable
+    static PlaybackSession take(int key) {
+        PlaybackSession session = SESSIONS.get(key);
+        if (session == null) {
+            return null;
+        }
+        SESSIONS.remove(key);
+        MAIN_HANDLER.removeCallbacks(session.mExpire);
+        session.mEngine.setListener(null);
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, "take " + key + " after " + (SystemClock.elapsedRealtime() - session.mDetachedAt) + "ms");
+        }
+        return session;
+    }
+
+    void release() {
+        mEngine.setListener(null);
+        PreparePipeline.releaseEngine(mEngine);
+        mSurface.release();
+        mSurfaceTexture.release();
+    }
+
+    @Override
+    public void onPrepared(@NonNull PlaybackEngine engine) {
+    }
+
+    @Override
+    public void onBufferingUpdate(@NonNull PlaybackEngine engine, int percent) {
+    }
+
+    @Override
+    public void onSeekComplete(@NonNull PlaybackEngine engine) {
+        mSeeksCompleted++;
+    }
+
+    @Override
+    public void onCompletion(@NonNull PlaybackEngine engine) {
+        mCompleted = true;
+    }
+
+    @Override
+    public void onVideoSizeChanged(@NonNull PlaybackEngine engine, int width, int height) {
+        mVideoWidth = width;
+        mVideoHeight = height;
+    }
+
+    @Override
+    public boolean onError(@NonNull PlaybackEngine engine, int what, int extra) {
+        mFailed = true;
+        return true;
+    }
+
+    @Override
+    public boolean onInfo(@NonNull PlaybackEngine engine, int what, int extra) {
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Last {@link #CAPACITY} events of all the players, kept in fixed arrays so that recording
+ * neither allocates nor logs and can stay on in production. Meant to be dumped into crash
+ * reports with {@link #dump(StringBuilder)}. Thread safe.
+ */
+public class PlayerEventLog {
+
+    public static final int CAPACITY = 256;
+
+    public static final int PREPARE = 0;
+    // Value: time since the prepare in milliseconds
+    public static final int PREPARED = 1;
+    public static final int PREPARE_FAILED = 2;
+    public static final int START = 3;
+    public static final int PAUSE = 4;
+    // Value: target position in milliseconds
+    public static final int SEEK = 5;
+    // Value: time since the first seek of the series in milliseconds
+    public static final int SEEK_COMPLETE = 6;
+    public static final int COMPLETION = 7;
+    // Value: what and extra
+    public static final int ERROR = 8;
+    public static final int REBUFFER_START = 9;
+    public static final int REBUFFER_END = 10;
+    // Value: width and height
+    public static final int SURFACE_AVAILABLE = 11;
+    public static final int SURFACE_SIZE_CHANGED = 12;
+    public static final int SURFACE_DESTROYED = 13;
+    public static final int FULLSCREEN_ENTER = 14;
+    public static final int FULLSCREEN_EXIT = 15;
+    public static final int QUEUE_ADVANCE = 16;
+    public static final int SESSION_RETAINED = 17;
+    public static final int SESSION_RESTORED = 18;
+    public static final int TRIMMED = 19;
+    public static final int RELEASE = 20;
+
+    private static final String[] NAMES = {"prepare", "prepared", "prepareFailed", "start", "pause", "seek",
+            "seekComplete", "completion", "error", "rebufferStart", "rebufferEnd", "surfaceAvailable",
+            "surfaceSizeChanged", "surfaceDestroyed", "fullscreenEnter", "fullscreenExit", "queueAdvance",
+            "sessionRetained", "sessionRestored", "trimmed", "release"};
+
+    private static final Object LOCK = new Object();
+    private static final long[] TIMES = new long[CAPACITY];
+    private static final int[] PLAYERS = new int[CAPACITY];
+    private static final int[] TYPES = new int[CAPACITY];
+    private static final long[] VALUES = new long[CAPACITY];
+    private static int sNext;
+    private static int sSize;
+
+    private PlayerEventLog() {
+    }
+
+    public static void record(int player, int type) {
+        record(player, type, 0);
+    }
+
+    /**
+     * @param player hash code of the player, as in the debug logs
+     */
+    public static void record(int player, int type, long value) {
+        long time = SystemClock.elapsedRealtime();
+        synchronized (LOCK) {
+            TIMES[sNext] = time;
+            PLAYERS[sNext] = player;
+            TYPES[sNext] = type;
+            VALUES[sNext] = value;
+            sNext = (sNext + 1) % CAPACITY;
+            sSize = Math.min(sSize + 1, CAPACITY);
+        }
+    }
+
+    /**
+     * Two ints in one event value, such as an error what and extra.
+     */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    /**
+     * Appends the events, oldest first, one per line with their age in milliseconds.
+     */
+    public static void dump(@NonNull StringBuilder out) {
+        long now = SystemClock.elapsedRealtime();
+        synchronized (LOCK) {
+            int start = (sNext - sSize + CAPACITY) % CAPACITY;
+            for (int i = 0; i < sSize; i++) {
+                int index = (start + i) % CAPACITY;
+                int type = TYPES[index];
+                out.append('-').append(now - TIMES[index]).append("ms ")
+                        .append(PLAYERS[index]).append(' ')
+                        .append(type >= 0 && type < NAMES.length ? NAMES[type] : String.valueOf(type));
+                long value = VALUES[index];
+                if (type == ERROR || type == SURFACE_AVAILABLE || type == SURFACE_SIZE_CHANGED) {
+                    out.append(' ').append((int) (value >> 32)).append(' ').append((int) value);
+                } else if (value != 0) {
+                    out.append(' ').append(value);
+                }
+                out.append('\n');
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (LOCK) {
+            sNext = 0;
+            sSize = 0;
+        }
+    }
+}
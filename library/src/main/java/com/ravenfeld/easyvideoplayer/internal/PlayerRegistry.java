@@ -0,0 +1,109 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Players alive in the process, trimmed when the system reports memory pressure. From
+ * TRIM_MEMORY_RUNNING_MODERATE the idle pooled players and the posters kept in memory are dropped.
+ * At TRIM_MEMORY_RUNNING_LOW, TRIM_MEMORY_RUNNING_CRITICAL and from TRIM_MEMORY_MODERATE the paused
+ * players off screen release their engine and surface too, they prepare again at the same position
+ * once back on screen. TRIM_MEMORY_UI_HIDDEN and TRIM_MEMORY_BACKGROUND, sent on every trip to the
+ * background, keep them prepared for a fast resume. Used on the main thread only.
+ */
+public class PlayerRegistry {
+
+    private static final String TAG = "PlayerRegistry";
+
+    private static final List<WeakReference<PlayerView>> PLAYERS = new ArrayList<>();
+    private static boolean sCallbacksRegistered;
+
+    private static final ComponentCallbacks2 CALLBACKS = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+    };
+
+    private PlayerRegistry() {
+    }
+
+    static void register(@NonNull Context context, @NonNull PlayerView player) {
+        if (!sCallbacksRegistered) {
+            sCallbacksRegistered = true;
+            Context application = context.getApplicationContext();
+            (application != null ? application : context).registerComponentCallbacks(CALLBACKS);
+        }
+        prune(player);
+        PLAYERS.add(new WeakReference<>(player));
+    }
+
+    static void unregister(@NonNull PlayerView player) {
+        prune(player);
+    }
+
+    /**
+     * Frees what {@code level}, one of the ComponentCallbacks2 TRIM_MEMORY levels, calls for and
+     * reports it to the playback metrics listeners.
+     */
+    public static void trimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return;
+        }
+        int instances = MediaPlayerPool.get().trimIdle();
+        long bytes = PosterCache.trimMemory();
+        if (releasesPlayers(level)) {
+            for (int i = PLAYERS.size() - 1; i >= 0; i--) {
+                PlayerView player = PLAYERS.get(i).get();
+                if (player == null) {
+                    PLAYERS.remove(i);
+                    continue;
+                }
+                long playerBytes = player.trimMemory();
+                if (playerBytes >= 0) {
+                    instances++;
+                    bytes += playerBytes;
+                }
+            }
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, "trimMemory " + level + ": " + instances + " players, " + bytes + " bytes");
+        }
+        PlaybackMetricsRecorder.onMemoryTrimmed(level, instances, bytes);
+    }
+
+    private static boolean releasesPlayers(int level) {
+        return level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+    }
+
+    // Drops player along with the players garbage collected without detach()
+    private static void prune(@NonNull PlayerView player) {
+        for (int i = PLAYERS.size() - 1; i >= 0; i--) {
+            PlayerView registered = PLAYERS.get(i).get();
+            if (registered == null || registered == player) {
+                PLAYERS.remove(i);
+            }
+        }
+    }
+}
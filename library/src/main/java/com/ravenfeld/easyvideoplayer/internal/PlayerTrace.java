@@ -0,0 +1,39 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Sections shown in systrace and Perfetto captures with the app tag enabled, no-ops below API 18.
+ * A section must end on the thread, and within the call, it began in.
+ */
+public class PlayerTrace {
+
+    // The reset, setDataSource and prepareAsync calls, on the prepare thread
+    public static final String PREPARE = "EasyVideoPlayer prepare";
+    public static final String PREPARED = "EasyVideoPlayer onPrepared";
+    // The seek handed to the engine, once the command queue lets it through
+    public static final String SEEK = "EasyVideoPlayer seekTo";
+    public static final String SEEK_COMPLETE = "EasyVideoPlayer onSeekComplete";
+    public static final String SURFACE_AVAILABLE = "EasyVideoPlayer onSurfaceTextureAvailable";
+    public static final String SURFACE_DESTROYED = "EasyVideoPlayer onSurfaceTextureDestroyed";
+    public static final String FULLSCREEN_ENTER = "EasyVideoPlayer onEnter";
+    public static final String FULLSCREEN_EXIT = "EasyVideoPlayer onExit";
+
+    private PlayerTrace() {
+    }
+
+    public static void beginSection(@NonNull String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+}
@@ -2,20 +2,21 @@ package com.ravenfeld.easyvideoplayer.internal;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
+import android.app.Activity;
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
+import android.content.ContextWrapper;
 import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Rect;
+import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
 import android.graphics.drawable.Drawable;
-import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Build;
-import android.os.Handler;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.GestureDetector;
@@ -26,9 +27,12 @@ import android.view.Surface;
 import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
@@ -39,34 +43,31 @@ import androidx.annotation.DrawableRes;
 import androidx.annotation.FloatRange;
 import androidx.annotation.IntDef;
 import androidx.annotation.IntRange;
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
-import androidx.appcompat.content.res.AppCompatResources;
 import androidx.core.content.ContextCompat;
 import androidx.core.graphics.drawable.DrawableCompat;
 
 import com.ravenfeld.easyvideoplayer.EasyVideoCallback;
 import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
 import com.ravenfeld.easyvideoplayer.IUserMethods;
+import com.ravenfeld.easyvideoplayer.PlaybackEngine;
 import com.ravenfeld.easyvideoplayer.R;
 
-import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayDeque;
+import java.util.List;
 
 
-public class PlayerView extends FrameLayout implements IUserMethods, TextureView.SurfaceTextureListener,
-        MediaPlayer.OnPreparedListener, MediaPlayer.OnBufferingUpdateListener, MediaPlayer.OnCompletionListener,
-        MediaPlayer.OnVideoSizeChangedListener, MediaPlayer.OnErrorListener, MediaPlayer.OnSeekCompleteListener, View.OnClickListener, SeekBar.OnSeekBarChangeListener {
+public class PlayerView extends FrameLayout implements IUserMethods, ProgressScheduler.Client, TextureView.SurfaceTextureListener,
+        PlaybackEngine.Listener, View.OnClickListener, SeekBar.OnSeekBarChangeListener,
+        PreparePipeline.Listener, HttpCacheProxy.CoverageListener {
 
     private static final String TAG = "PlayerView";
 
-    private enum Work {
-        SEEK, START, PAUSE
-    }
-
     @IntDef({LEFT_ACTION_NONE, LEFT_ACTION_RESTART, LEFT_ACTION_RETRY})
     @Retention(RetentionPolicy.SOURCE)
     public @interface LeftAction {
@@ -77,13 +78,27 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     public @interface RightAction {
     }
 
+    /**
+     * How the video is scaled within the player: letterboxed, stretched, center cropped, or as
+     * wide as the player and vertically centered.
+     */
+    @IntDef({SCALE_MODE_FIT, SCALE_MODE_FILL, SCALE_MODE_CROP, SCALE_MODE_FIT_WIDTH})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ScaleMode {
+    }
+
     public static final int LEFT_ACTION_NONE = 0;
     public static final int LEFT_ACTION_RESTART = 1;
     public static final int LEFT_ACTION_RETRY = 2;
     public static final int RIGHT_ACTION_NONE = 3;
     public static final int RIGHT_ACTION_SUBMIT = 4;
     public static final int RIGHT_ACTION_CUSTOM_LABEL = 5;
-    private static final int UPDATE_INTERVAL = 100;
+    public static final int SCALE_MODE_FIT = 0;
+    public static final int SCALE_MODE_FILL = 1;
+    public static final int SCALE_MODE_CROP = 2;
+    public static final int SCALE_MODE_FIT_WIDTH = 3;
+    private static final int MIN_UPDATE_INTERVAL = 16;
+    private static final int HIDDEN_UPDATE_INTERVAL = 1000;
 
     public PlayerView(Context context) {
         this(context, null);
@@ -99,8 +114,19 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     }
 
     private TextureView mTextureView;
+    private ImageView mPosterView;
+    private String mPosterKey;
+    private SurfaceTexture mSurfaceTexture;
     private Surface mSurface;
-
+    private boolean mSurfaceTransition;
+    private long mSurfaceDetachedAt;
+    private long mSurfaceSwapGapMs = -1;
+
+    // The overlays are inflated from their stub on first use
+    private ViewStub mControlsStub;
+    private ViewStub mProgressStub;
+    private ViewStub mTextErrorStub;
+    private ViewStub mBtnPlayPauseStub;
     private View mControlsFrame;
     private View mProgressFrame;
     private View mTextErrorFrame;
@@ -119,16 +145,146 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     private TextView mBtnSubmit;
     private TextView mLabelCustom;
     private TextView mLabelBottom;
-
-    private MediaPlayer mPlayer;
+    private boolean mControlsEnabled;
+    private View mScrubPreviewFrame;
+    private ImageView mScrubPreviewImage;
+    private TextView mScrubPreviewTime;
+    private ScrubPreviewLoader mScrubPreviewLoader;
+    private final DurationFormatter mScrubFormatter = new DurationFormatter();
+    private boolean mScrubPreviewEnabled;
+    private boolean mScrubbing;
+
+    private PlaybackEngine mPlayer;
+    private PreparePipeline mPreparePipeline;
+    private int mPrepareGeneration;
+    private PrepareTimings mPrepareTimings;
+    private final PlaybackMetricsRecorder mMetrics = new PlaybackMetricsRecorder(this);
+    private String mCoverageUrl;
+    private CacheCoverage mCacheCoverage;
+    private volatile boolean mCoveragePending;
     private boolean mSurfaceAvailable;
     private boolean mIsPrepared;
     private boolean mIsBuffered;
     private boolean mIsOnPreparing;
     private boolean mWasPlaying;
-    private ArrayDeque<Work> workedList = new ArrayDeque<>();
+    // The engine was released under memory pressure, only the source and position are kept
+    private boolean mTrimmed;
+    private boolean mStartWhenBuffered;
+    // Keeps playing once hidden, without rendering the video
+    private boolean mAudioOnly;
+    private boolean mVideoDetached;
+    private boolean mScrollListening;
+    private final CommandQueue.Target mCommandTarget = new CommandQueue.Target() {
+        @Override
+        public void onSeek(int position) {
+            PlayerTrace.beginSection(PlayerTrace.SEEK);
+            try {
+                mPlayer.seekTo(position);
+            } finally {
+                PlayerTrace.endSection();
+            }
+        }
+
+        @Override
+        public void onStart() {
+            performStart();
+        }
+
+        @Override
+        public void onPause() {
+            performPause();
+        }
+    };
+    private CommandQueue mCommandQueue = new CommandQueue(mCommandTarget);
+    // Key of the session retained across configuration changes, View.NO_ID if none
+    private int mSessionKey = NO_ID;
+    private boolean mSessionRestoring;
+
+    // Sources played after the current one, the first is prepared ahead on its own engine
+    private final ArrayDeque<Uri> mQueue = new ArrayDeque<>();
+    private PreparePipeline mNextPipeline;
+    private PlaybackEngine mNextPlayer;
+    private PrepareTimings mNextTimings;
+    private int mNextGeneration;
+    private boolean mNextPrepared;
+    private boolean mNextBuffered;
+    private long mTransitionStartedAt;
+    // When the pending prepare and seek series began, 0 if none, for the event log
+    private long mPrepareRequestedAt;
+    private long mSeekRequestedAt;
+    private boolean mTransitionPrepared;
+
+    private final PreparePipeline.Listener mNextPipelineListener = new PreparePipeline.Listener() {
+        @Override
+        public void onSourceResolved(int generation, boolean buffered) {
+            if (generation == mNextGeneration) {
+                mNextBuffered = buffered;
+            }
+        }
+
+        @Override
+        public void onPrepareDispatched(int generation, @NonNull PrepareTimings timings) {
+        }
+
+        @Override
+        public void onPrepareFailed(int generation, @NonNull Exception e) {
+            if (generation != mNextGeneration) {
+                return;
+            }
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, hashCode() + " next prepare failed", e);
+            }
+            // Prepared again once its turn comes, the error is reported then
+            discardNext();
+        }
+    };
+
+    private final PlaybackEngine.Listener mNextListener = new PlaybackEngine.Listener() {
+        @Override
+        public void onPrepared(@NonNull PlaybackEngine engine) {
+            if (engine != mNextPlayer) {
+                return;
+            }
+            mNextPrepared = true;
+            if (mNextTimings != null) {
+                mNextTimings.markPrepared();
+            }
+            chainNext();
+        }
+
+        @Override
+        public void onBufferingUpdate(@NonNull PlaybackEngine engine, int percent) {
+        }
+
+        @Override
+        public void onSeekComplete(@NonNull PlaybackEngine engine) {
+        }
+
+        @Override
+        public void onCompletion(@NonNull PlaybackEngine engine) {
+        }
 
-    private Handler mHandler;
+        @Override
+        public void onVideoSizeChanged(@NonNull PlaybackEngine engine, int width, int height) {
+        }
+
+        @Override
+        public boolean onError(@NonNull PlaybackEngine engine, int what, int extra) {
+            if (engine == mNextPlayer) {
+                discardNext();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onInfo(@NonNull PlaybackEngine engine, int what, int extra) {
+            return false;
+        }
+    };
+
+    private ProgressScheduler mProgressScheduler;
+    private final DurationFormatter mPositionFormatter = new DurationFormatter();
+    private final DurationFormatter mDurationFormatter = new DurationFormatter();
 
     private Uri mSource;
     private EasyVideoCallback mCallback;
@@ -153,35 +309,91 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     private boolean mEnabledSeekBar = true;
     private int mThemeColor = 0;
     private float mVideoSizeLoading = 16f / 10f;
+    private final VideoLayout mVideoLayout = new VideoLayout();
+    private final Matrix mTransform = new Matrix();
+    private final Rect mVisibleRect = new Rect();
+    @ScaleMode
+    private int mScaleMode = SCALE_MODE_FIT;
+    private boolean mMeasured;
+    private int mWidthMeasureSpec;
+    private int mHeightMeasureSpec;
+    private int mVideoWidth;
+    private int mVideoHeight;
 
     private boolean isVideoOnly = false;
     private boolean isError = false;
     private String errorMessage = "";
 
-    // Runnable used to run code on an interval to update counters and seeker
-    private final Runnable mUpdateCounters = new Runnable() {
+    // Keeps the callback informed at a coarse rate while the controls are not refreshed
+    private final ProgressListener mCallbackProgress = new ProgressListener() {
         @Override
-        public void run() {
-            if (mHandler == null || !mIsPrepared) {
-                return;
+        public void onProgressUpdate(PlayerView player, int position, int duration) {
+            if (mCallback != null) {
+                mCallback.onVideoProgressUpdate(player, position, duration);
             }
-            updateUi();
+        }
+    };
 
-            if (mHandler != null) {
-                mHandler.postDelayed(this, UPDATE_INTERVAL);
+    // Ends a surface transition on the first draw of the reattached texture
+    private final ViewTreeObserver.OnPreDrawListener mSurfaceSwapListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            getViewTreeObserver().removeOnPreDrawListener(this);
+            mSurfaceTransition = false;
+            mSurfaceSwapGapMs = SystemClock.elapsedRealtime() - mSurfaceDetachedAt;
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, hashCode() + " surface swap gap: " + mSurfaceSwapGapMs + "ms");
+            }
+            if (mSessionRestoring) {
+                mSessionRestoring = false;
+                mMetrics.onSessionRestored(mSurfaceSwapGapMs);
+                PlayerEventLog.record(hashCode(), PlayerEventLog.SESSION_RESTORED, mSurfaceSwapGapMs);
+                if (mCallback != null) {
+                    mCallback.onPrepared(PlayerView.this);
+                }
             }
+            return true;
+        }
+    };
+
+    // Follows the view on and off screen while trimmed or audio only
+    private final ViewTreeObserver.OnScrollChangedListener mScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            restoreIfVisible();
+            updateVideoAttachment();
         }
     };
 
+    // Runnable used to bring cache coverage updates from the proxy threads to the UI
+    private final Runnable mUpdateCoverage = new Runnable() {
+        @Override
+        public void run() {
+            mCoveragePending = false;
+            HttpCacheProxy proxy = HttpCacheProxy.get();
+            if (proxy == null || mCoverageUrl == null) {
+                return;
+            }
+            mCacheCoverage = proxy.getCoverage(mCoverageUrl);
+            if (mCacheCoverage == null) {
+                return;
+            }
+            updateSecondaryProgress();
+            if (mCallback != null) {
+                mCallback.onCacheCoverageUpdate(PlayerView.this, mCacheCoverage);
+            }
+        }
+    };
 
     private void init(Context context) {
+        long startedAt = System.nanoTime();
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " init:");
         }
         setBackgroundColor(Color.BLACK);
 
         if (mThemeColor == 0) {
-            mThemeColor = Util.resolveColor(context, R.attr.colorPrimary);
+            mThemeColor = ThemeResources.resolveColor(context, R.attr.colorPrimary);
         }
 
         if (mRetryText == null) {
@@ -191,25 +403,17 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             mSubmitText = context.getResources().getText(R.string.evp_submit);
         }
 
-        if (mRestartDrawable == null) {
-            mRestartDrawable = AppCompatResources.getDrawable(context, R.drawable.evp_action_restart);
-        }
-        if (mPlayDrawable == null) {
-            mPlayDrawable = AppCompatResources.getDrawable(context, R.drawable.evp_action_play);
-        }
-        if (mPauseDrawable == null) {
-            mPauseDrawable = AppCompatResources.getDrawable(context, R.drawable.evp_action_pause);
-        }
-        if (mFullScreenDrawable == null) {
-            mFullScreenDrawable = AppCompatResources.getDrawable(context, R.drawable.ic_fullscreen);
-        }
-        if (mFullScreenExitDrawable == null) {
-            mFullScreenExitDrawable = AppCompatResources.getDrawable(context, R.drawable.ic_fullscreen_exit);
-        }
-
+        mPreparePipeline = new PreparePipeline(context, this);
+        mNextPipeline = new PreparePipeline(context, mNextPipelineListener);
+        mProgressScheduler = new ProgressScheduler(this);
         onInflate();
+        PlayerRegistry.register(context, this);
         initPlayer();
         prepare();
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " init: " + getChildCount() + " children in "
+                    + (System.nanoTime() - startedAt) / 1000 + "us");
+        }
     }
 
     @Override
@@ -217,8 +421,14 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " setSource: " + source);
         }
+        if (isPrepared() && source.equals(mSource)) {
+            return;
+        }
         mSource = source;
-        if (mPlayer != null) {
+        mMetrics.onSourceSet();
+        if (mTrimmed) {
+            restoreTrimmed();
+        } else if (mPlayer != null) {
             prepare();
         }
     }
@@ -256,7 +466,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setCustomLabelText(@Nullable CharSequence text) {
         mCustomLabelText = text;
-        mLabelCustom.setText(text);
+        if (mLabelCustom != null) {
+            mLabelCustom.setText(text);
+        }
         setRightAction(RIGHT_ACTION_CUSTOM_LABEL);
     }
 
@@ -268,6 +480,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setBottomLabelText(@Nullable CharSequence text) {
         mBottomLabelText = text;
+        if (mLabelBottom == null) {
+            return;
+        }
         mLabelBottom.setText(text);
         if (text == null || text.toString().trim().length() == 0) {
             mLabelBottom.setVisibility(View.GONE);
@@ -284,7 +499,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setRetryText(@Nullable CharSequence text) {
         mRetryText = text;
-        mBtnRetry.setText(text);
+        if (mBtnRetry != null) {
+            mBtnRetry.setText(text);
+        }
     }
 
     @Override
@@ -295,7 +512,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setSubmitText(@Nullable CharSequence text) {
         mSubmitText = text;
-        mBtnSubmit.setText(text);
+        if (mBtnSubmit != null) {
+            mBtnSubmit.setText(text);
+        }
     }
 
     @Override
@@ -306,64 +525,66 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setRestartDrawable(@NonNull Drawable drawable) {
         mRestartDrawable = drawable;
-        mBtnRestart.setImageDrawable(drawable);
+        if (mBtnRestart != null) {
+            mBtnRestart.setImageDrawable(drawable);
+        }
     }
 
     @Override
     public void setRestartDrawableRes(@DrawableRes int res) {
-        setRestartDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setRestartDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
     public void setPlayDrawable(@NonNull Drawable drawable) {
         mPlayDrawable = drawable;
-        if (!isPlaying()) {
+        if (mBtnPlayPause != null && !isPlaying()) {
             mBtnPlayPause.setImageDrawable(drawable);
         }
     }
 
     @Override
     public void setPlayDrawableRes(@DrawableRes int res) {
-        setPlayDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPlayDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
     public void setPauseDrawable(@NonNull Drawable drawable) {
         mPauseDrawable = drawable;
-        if (isPlaying()) {
+        if (mBtnPlayPause != null && isPlaying()) {
             mBtnPlayPause.setImageDrawable(drawable);
         }
     }
 
     @Override
     public void setPauseDrawableRes(@DrawableRes int res) {
-        setPauseDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPauseDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
     public void setFullScreenDrawable(@NonNull Drawable drawable) {
         mFullScreenDrawable = drawable;
-        if (!isVideoOnly) {
+        if (mBtnFullScreen != null && !isVideoOnly) {
             mBtnFullScreen.setImageDrawable(drawable);
         }
     }
 
     @Override
     public void setFullScreenDrawableRes(@DrawableRes int res) {
-        setPlayDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPlayDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
     public void setFullScreenExitDrawable(@NonNull Drawable drawable) {
         mFullScreenExitDrawable = drawable;
-        if (isVideoOnly) {
+        if (mBtnFullScreen != null && isVideoOnly) {
             mBtnFullScreen.setImageDrawable(drawable);
         }
     }
 
     @Override
     public void setFullScreenExitDrawableRes(@DrawableRes int res) {
-        setPauseDrawable(AppCompatResources.getDrawable(getContext(), res));
+        setPauseDrawable(ThemeResources.getDrawable(getContext(), res));
     }
 
     @Override
@@ -397,63 +618,399 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mInitialPosition = pos;
     }
 
-    private synchronized void prepare() {
+    private void prepare() {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " prepare:");
         }
+        if (mSource != null && !mIsPrepared) {
+            // Shown as soon as there is a source, the surface may come later
+            setProgressVisible(true);
+        }
         if (!mSurfaceAvailable || mSource == null || mPlayer == null || mIsPrepared) {
             return;
         }
-        try {
-            mPlayer.reset();
-            boolean continuePrepa = true;
-            if (mCallback != null) {
-                continuePrepa = mCallback.onPreparing(this);
+        boolean continuePrepa = true;
+        if (mCallback != null) {
+            continuePrepa = mCallback.onPreparing(this);
+        }
+        if (continuePrepa) {
+            mIsOnPreparing = true;
+            mIsBuffered = false;
+            mPrepareTimings = new PrepareTimings();
+            mCommandQueue.clear();
+            mMetrics.onPrepareRequested();
+            showPoster(Math.max(0, mInitialPosition), false);
+            mVideoDetached = false;
+            mMetrics.onVideoRendered(true);
+            mPrepareRequestedAt = SystemClock.elapsedRealtime();
+            PlayerEventLog.record(hashCode(), PlayerEventLog.PREPARE);
+            mPrepareGeneration = mPreparePipeline.prepare(mPlayer, mSurface, mSource, mPrepareTimings);
+        } else {
+            mCommandQueue.clear();
+            mPreparePipeline.reset(mPlayer);
+        }
+    }
+
+    @Override
+    public void onSourceResolved(int generation, boolean buffered) {
+        if (generation != mPrepareGeneration) {
+            return;
+        }
+        mIsBuffered = buffered;
+        if (!buffered) {
+            listenCoverage(mSource.toString());
+        }
+    }
+
+    private void listenCoverage(@Nullable String url) {
+        HttpCacheProxy proxy = HttpCacheProxy.get();
+        if (mCoverageUrl != null && proxy != null) {
+            proxy.removeCoverageListener(mCoverageUrl, this);
+        }
+        mCoverageUrl = url;
+        mCacheCoverage = null;
+        if (url != null && proxy != null) {
+            proxy.addCoverageListener(url, this);
+            onCoverageChanged();
+        }
+    }
+
+    @Override
+    public void onCoverageChanged() {
+        if (!mCoveragePending) {
+            mCoveragePending = true;
+            post(mUpdateCoverage);
+        }
+    }
+
+    private void updateSecondaryProgress() {
+        if (mSeeker == null || mCacheCoverage == null || mCacheCoverage.getLength() <= 0 || !isPrepared()) {
+            return;
+        }
+        int dur = getDuration();
+        int pos = Math.max(0, getCurrentPosition());
+        if (dur <= 0) {
+            return;
+        }
+        // Byte offsets are mapped to time linearly, which is close enough for progressive media
+        long length = mCacheCoverage.getLength();
+        long cachedEnd = mCacheCoverage.getCachedEnd((long) ((double) pos / dur * length));
+        mSeeker.setSecondaryProgress((int) ((double) cachedEnd / length * dur));
+    }
+
+    @Override
+    public void onPrepareDispatched(int generation, @NonNull PrepareTimings timings) {
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " onPrepareDispatched: " + timings);
+        }
+    }
+
+    @Override
+    public void onPrepareFailed(int generation, @NonNull Exception e) {
+        if (generation != mPrepareGeneration) {
+            return;
+        }
+        mIsOnPreparing = false;
+        mPrepareRequestedAt = 0;
+        PlayerEventLog.record(hashCode(), PlayerEventLog.PREPARE_FAILED);
+        throwError(e);
+    }
+
+    /**
+     * Stage timings of the last prepare, or null if none was started.
+     */
+    @Nullable
+    public PrepareTimings getPrepareTimings() {
+        return mPrepareTimings;
+    }
+
+    /**
+     * Time in milliseconds between the surface leaving the previous window and its first draw in
+     * the new one during the last mini/fullscreen swap, or -1 if there was none.
+     */
+    public long getSurfaceSwapGapMs() {
+        return mSurfaceSwapGapMs;
+    }
+
+    /**
+     * True from the start of a mini/fullscreen swap until the texture is drawn in the new window.
+     */
+    boolean isSurfaceTransitionActive() {
+        return mSurfaceTransition;
+    }
+
+    @Override
+    public void enqueue(@NonNull Uri source) {
+        mQueue.add(source);
+        prepareNext();
+    }
+
+    /**
+     * Replaces the queued sources, the next one stays prepared if it is still the first.
+     */
+    public void setQueue(@NonNull List<Uri> sources) {
+        Uri next = mQueue.peek();
+        mQueue.clear();
+        mQueue.addAll(sources);
+        if (next == null || !next.equals(mQueue.peek())) {
+            discardNext();
+        }
+        prepareNext();
+    }
+
+    @Override
+    public void clearQueue() {
+        mQueue.clear();
+        discardNext();
+    }
+
+    @Override
+    public boolean skipToNext() {
+        if (mPlayer == null || mQueue.isEmpty()) {
+            return false;
+        }
+        if (isPlaying()) {
+            mPlayer.pause();
+        }
+        return advance();
+    }
+
+    /**
+     * Prepares the first queued source on an engine of its own while the current one plays.
+     */
+    private void prepareNext() {
+        if (mNextPlayer != null || mQueue.isEmpty() || !isBuffered()) {
+            return;
+        }
+        mNextPlayer = EasyVideoPlayerConfig.getPlaybackEngineFactory().create(getContext());
+        mNextPlayer.setListener(mNextListener);
+        mNextPrepared = false;
+        mNextBuffered = false;
+        mNextTimings = new PrepareTimings();
+        // No surface yet, the current engine is still connected to it
+        mNextGeneration = mNextPipeline.prepare(mNextPlayer, null, mQueue.peek(), mNextTimings);
+    }
+
+    /**
+     * Lets the platform start the next MediaPlayer as soon as the current one completes, the audio
+     * then goes on without a gap and only the surface is handed over on completion.
+     */
+    private void chainNext() {
+        if (mNextPrepared && mPlayer instanceof MediaPlayerEngine && mNextPlayer instanceof MediaPlayerEngine) {
+            ((MediaPlayerEngine) mPlayer).setNext((MediaPlayerEngine) mNextPlayer);
+        }
+    }
+
+    private void discardNext() {
+        if (mNextPlayer == null) {
+            return;
+        }
+        if (mPlayer instanceof MediaPlayerEngine) {
+            ((MediaPlayerEngine) mPlayer).setNext(null);
+        }
+        mNextPlayer.setListener(null);
+        mNextPipeline.release(mNextPlayer);
+        mNextPlayer = null;
+        mNextPrepared = false;
+    }
+
+    /**
+     * Moves on to the first queued source, on the engine prepared ahead if it is ready, by
+     * preparing it otherwise.
+     *
+     * @return false if the queue is empty
+     */
+    private boolean advance() {
+        Uri source = mQueue.poll();
+        if (source == null || mPlayer == null) {
+            return false;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " advance: " + source + " prepared " + mNextPrepared);
+        }
+        mTransitionStartedAt = SystemClock.elapsedRealtime();
+        mTransitionPrepared = mNextPlayer != null && mNextPrepared;
+        PlayerEventLog.record(hashCode(), PlayerEventLog.QUEUE_ADVANCE, mTransitionPrepared ? 1 : 0);
+        stopProgress();
+        mCommandQueue.clear();
+        mMetrics.reset();
+        hidePoster();
+        PlaybackEngine previous = mPlayer;
+        previous.setListener(null);
+        // The surface accepts one engine at a time
+        previous.setSurface(null);
+        mPreparePipeline.release(previous);
+        mSource = source;
+        mInitialPosition = -1;
+        isError = false;
+
+        if (mTransitionPrepared) {
+            mPlayer = mNextPlayer;
+            mNextPlayer = null;
+            mNextPrepared = false;
+            mPlayer.setListener(this);
+            mPrepareTimings = mNextTimings;
+            mIsOnPreparing = false;
+            mIsPrepared = true;
+            mIsBuffered = true;
+            mVideoDetached = true;
+            updateVideoAttachment();
+            listenCoverage(mNextBuffered ? null : source.toString());
+            mVideoWidth = mPlayer.getVideoWidth();
+            mVideoHeight = mPlayer.getVideoHeight();
+            onVideoAspectChanged();
+            if (mSeeker != null) {
+                mSeeker.setProgress(0);
+                mSeeker.setMax(mPlayer.getDuration());
             }
-            if (continuePrepa) {
-                mIsOnPreparing = true;
-                mPlayer.setSurface(mSurface);
-                if (mSource.getScheme() != null &&
-                        (mSource.getScheme().equals("http") || mSource.getScheme().equals("https"))) {
-                    if (EasyVideoPlayerConfig.isDebug()) {
-                        Log.d(TAG, hashCode() + " Loading web URI: " + mSource.toString());
-                    }
-                    mIsBuffered = false;
-                    mPlayer.setDataSource(mSource.toString());
-                } else if (mSource.getScheme() != null && (mSource.getScheme().equals("file") && mSource.getPath().contains("/android_asset/"))) {
-                    if (EasyVideoPlayerConfig.isDebug()) {
-                        Log.d(TAG, hashCode() + " Loading assets URI: " + mSource.toString());
-                    }
-                    mIsBuffered = true;
-                    AssetFileDescriptor afd;
-                    afd = getContext().getAssets().openFd(mSource.toString().replace("file:///android_asset/", ""));
-                    mPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-                    afd.close();
-                } else if (mSource.getScheme() != null && mSource.getScheme().equals("asset")) {
-                    if (EasyVideoPlayerConfig.isDebug()) {
-                        Log.d(TAG, hashCode() + " Loading assets URI: " + mSource.toString());
-                    }
-                    mIsBuffered = true;
-                    AssetFileDescriptor afd;
-                    afd = getContext().getAssets().openFd(mSource.toString().replace("asset://", ""));
-                    mPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-                    afd.close();
-                } else {
-                    if (EasyVideoPlayerConfig.isDebug()) {
-                        Log.d(TAG, hashCode() + " Loading local URI: " + mSource.toString());
-                    }
-                    mIsBuffered = true;
-                    mPlayer.setDataSource(getContext(), mSource);
-                }
-                mPlayer.prepareAsync();
+            // The platform already started a chained MediaPlayer, start() is a no-op then
+            performStart();
+            updateUi();
+        } else {
+            discardNext();
+            mPlayer = EasyVideoPlayerConfig.getPlaybackEngineFactory().create(getContext());
+            mPlayer.setListener(this);
+            mIsOnPreparing = false;
+            mIsPrepared = false;
+            mIsBuffered = false;
+            mStartWhenBuffered = true;
+            listenCoverage(null);
+            mMetrics.onSourceSet();
+            prepare();
+        }
+        if (mCallback != null) {
+            mCallback.onQueueAdvanced(this, source);
+        }
+        if (mInternalCallback != null) {
+            mInternalCallback.onQueueAdvanced(this, source);
+        }
+        prepareNext();
+        return true;
+    }
+
+    /**
+     * Key under which the playback is retained when the view is destroyed by a configuration
+     * change. A view given the key of a retained session takes over its prepared engine and
+     * texture instead of preparing the source again.
+     */
+    public void setSessionKey(int key) {
+        mSessionKey = key;
+        PlaybackSession session = PlaybackSession.take(key);
+        if (session != null) {
+            adoptSession(session);
+        }
+    }
+
+    private void retainSession() {
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " retainSession: " + mSessionKey);
+        }
+        discardNext();
+        PlayerEventLog.record(hashCode(), PlayerEventLog.SESSION_RETAINED);
+        PlaybackSession.retain(new PlaybackSession(mSessionKey, mPlayer, mSurfaceTexture, mSurface, mSource,
+                mCommandQueue, mCoverageUrl, mPrepareTimings, mWasPlaying, mVideoWidth, mVideoHeight,
+                mSurfaceDetachedAt));
+        // Everything now belongs to the session, the release of this view must leave it alone
+        mPlayer = null;
+        mSurfaceTexture = null;
+        mSurface = null;
+        mSurfaceTransition = false;
+        mSurfaceAvailable = false;
+        mIsPrepared = false;
+        mIsBuffered = false;
+        mCommandQueue = new CommandQueue(mCommandTarget);
+        listenCoverage(null);
+        stopProgress();
+    }
+
+    private void adoptSession(@NonNull PlaybackSession session) {
+        if (session.mFailed) {
+            session.release();
+            return;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " adoptSession: " + session.mSource);
+        }
+        if (mPlayer != null) {
+            mPlayer.setListener(null);
+            mPreparePipeline.release(mPlayer);
+        } else {
+            mPreparePipeline.cancel();
+        }
+        mPlayer = session.mEngine;
+        mPlayer.setListener(this);
+        mSource = session.mSource;
+        mPrepareTimings = session.mPrepareTimings;
+        mIsOnPreparing = false;
+        mIsPrepared = true;
+        mIsBuffered = true;
+        isError = false;
+        mWasPlaying = session.mWasPlaying;
+        mVideoWidth = session.mVideoWidth;
+        mVideoHeight = session.mVideoHeight;
+        mCommandQueue = session.mCommandQueue;
+        mCommandQueue.setTarget(mCommandTarget);
+        for (int i = 0; i < session.mSeeksCompleted; i++) {
+            mCommandQueue.onSeekComplete();
+        }
+
+        if (mSurface != null) {
+            mSurface.release();
+        }
+        mSurfaceTexture = session.mSurfaceTexture;
+        mSurface = session.mSurface;
+        mSurfaceAvailable = true;
+        mSurfaceTransition = true;
+        mSurfaceDetachedAt = session.mDetachedAt;
+        mSessionRestoring = true;
+        mVideoDetached = false;
+        if (mTextureView.getSurfaceTexture() != null) {
+            // The view already got a texture of its own, the retained one replaces it
+            mTextureView.setSurfaceTexture(mSurfaceTexture);
+            getViewTreeObserver().removeOnPreDrawListener(mSurfaceSwapListener);
+            getViewTreeObserver().addOnPreDrawListener(mSurfaceSwapListener);
+        }
+
+        listenCoverage(session.mCoverageUrl);
+        hidePoster();
+        setControlsEnabled(true);
+        displayIconPlayPause();
+        if (mSeeker != null) {
+            mSeeker.setMax(mPlayer.getDuration());
+            mBtnPlayPause.setImageDrawable(mPlayDrawable);
+        }
+        updateUi();
+        onVideoAspectChanged();
+        if (session.mCompleted) {
+            onCompletion(mPlayer);
+        }
+    }
+
+    private boolean isChangingConfigurations() {
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return ((Activity) context).isChangingConfigurations();
             }
-        } catch (IOException | IllegalStateException e) {
-            throwError(e);
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the SurfaceTexture and the decoder rendering into it alive while the view is moved to
+     * another window, the texture is reattached as is instead of preparing a new surface.
+     */
+    void beginSurfaceTransition() {
+        if (mSurfaceTexture == null) {
+            return;
         }
+        mSurfaceTransition = true;
+        mSurfaceDetachedAt = SystemClock.elapsedRealtime();
     }
 
     private void updateUi() {
-        if (mPlayer == null || mSeeker == null || mLabelPosition == null || mLabelDuration == null || isError) {
+        if (mPlayer == null || isError) {
             return;
         }
 
@@ -462,16 +1019,92 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (pos > dur) {
             pos = dur;
         }
-        mLabelPosition.setText(Util.getDurationString(pos, false));
-        mLabelDuration.setText(Util.getDurationString(dur - pos, true));
-        mSeeker.setProgress(pos);
-        mSeeker.setMax(dur);
+        if (mSeeker != null) {
+            mPositionFormatter.setText(mLabelPosition, pos, false);
+            mDurationFormatter.setText(mLabelDuration, dur - pos, true);
+            if (!mScrubbing) {
+                mSeeker.setProgress(pos);
+            }
+            mSeeker.setMax(dur);
+            updateSecondaryProgress();
+        }
         if (mCallback != null) {
             mCallback.onVideoProgressUpdate(this, pos, dur);
         }
     }
 
+    @Override
+    public long onUiFrame() {
+        updateUi();
+        int pos = getCurrentPosition();
+        int dur = getDuration();
+        if (pos < 0 || dur <= 0) {
+            return MIN_UPDATE_INTERVAL;
+        }
+        // Labels change on the next second, the seek bar once the position moved by a pixel
+        long next = 1000 - pos % 1000;
+        int width = mSeeker != null ? mSeeker.getWidth() - mSeeker.getPaddingLeft() - mSeeker.getPaddingRight() : 0;
+        if (width > 0) {
+            next = Math.min(next, dur / width);
+        }
+        return Math.max(MIN_UPDATE_INTERVAL, next);
+    }
+
+    @Override
+    public void onListenersFrame(@NonNull List<ProgressListener> listeners) {
+        int pos = getCurrentPosition();
+        int dur = getDuration();
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onProgressUpdate(this, pos, dur);
+        }
+    }
+
+    /**
+     * Calls {@code listener} every {@code intervalMs} while playing, whether the controls are
+     * visible or not.
+     */
+    @Override
+    public void addProgressListener(@NonNull ProgressListener listener, @IntRange(from = 1) int intervalMs) {
+        mProgressScheduler.add(listener, intervalMs);
+    }
+
+    @Override
+    public void removeProgressListener(@NonNull ProgressListener listener) {
+        mProgressScheduler.remove(listener);
+    }
+
+    /**
+     * Main thread wake ups per second of playback spent on progress updates.
+     */
+    public float getProgressWakeupsPerSecond() {
+        return mProgressScheduler.getWakeupsPerSecond();
+    }
+
+    private void updateProgressScheduling(boolean controlsShown) {
+        if (mProgressScheduler == null) {
+            return;
+        }
+        boolean uiActive = controlsShown && isShown() && getWindowVisibility() == VISIBLE;
+        mProgressScheduler.setUiActive(uiActive);
+        if (uiActive) {
+            mProgressScheduler.remove(mCallbackProgress);
+        } else {
+            mProgressScheduler.add(mCallbackProgress, HIDDEN_UPDATE_INTERVAL);
+        }
+    }
+
+    private void stopProgress() {
+        mProgressScheduler.stop();
+        mMetrics.onPlaying(false);
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " progress: " + mProgressScheduler.getWakeups() + " wake ups, "
+                    + mProgressScheduler.getUiFrames() + " ui frames, "
+                    + mProgressScheduler.getWakeupsPerSecond() + "/s");
+        }
+    }
+
     private void setControlsEnabled(boolean enabled) {
+        mControlsEnabled = enabled;
         if (mSeeker == null) {
             return;
         }
@@ -493,7 +1126,11 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
 
     @Override
     public void showControls() {
-        if (mControlsDisabled || isControlsShown() || mSeeker == null) {
+        if (mControlsDisabled || isControlsShown()) {
+            return;
+        }
+        inflateControls();
+        if (mSeeker == null) {
             return;
         }
 
@@ -503,6 +1140,7 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mControlsFrame.animate().alpha(1f)
                 .setInterpolator(new DecelerateInterpolator())
                 .setListener(null).start();
+        updateProgressScheduling(true);
         if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
             mBtnPlayPause.setVisibility(View.VISIBLE);
         }
@@ -526,6 +1164,7 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
                         }
                     }
                 }).start();
+        updateProgressScheduling(false);
         if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
             mBtnPlayPause.setVisibility(View.INVISIBLE);
         }
@@ -579,7 +1218,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void disableControls() {
         mControlsDisabled = true;
-        mControlsFrame.setVisibility(View.GONE);
+        if (mControlsFrame != null) {
+            mControlsFrame.setVisibility(View.GONE);
+        }
         mClickFrame.setOnTouchListener(null);
         mClickFrame.setClickable(false);
     }
@@ -587,7 +1228,21 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     public void setEnabledSeekBar(boolean enabled) {
         mEnabledSeekBar = enabled;
-        mSeeker.setEnabled(mEnabledSeekBar);
+        if (mSeeker != null) {
+            mSeeker.setEnabled(mEnabledSeekBar);
+        }
+    }
+
+    /**
+     * While dragging the seek bar, shows frames extracted in the background above it instead of
+     * seeking the player, which then seeks once when the drag ends.
+     */
+    @Override
+    public void setScrubPreviewEnabled(boolean enabled) {
+        mScrubPreviewEnabled = enabled;
+        if (!enabled) {
+            hideScrubPreview();
+        }
     }
 
 
@@ -621,6 +1276,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @CheckResult
     @Override
     public int getCurrentPosition() {
+        if (mTrimmed) {
+            return mInitialPosition;
+        }
         if (mPlayer == null || !isPrepared()) {
             return -1;
         }
@@ -645,27 +1303,35 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " start: ");
         }
-        if (mPlayer == null) {
+        if (mTrimmed) {
+            mStartWhenBuffered = true;
+            restoreTrimmed();
             return;
         }
-        if (workedList.isEmpty()) {
-            if (isBuffered()) {
-                isError = false;
-                mTextErrorFrame.setVisibility(INVISIBLE);
-                mPlayer.start();
+        if (mPlayer == null || !isBuffered()) {
+            return;
+        }
+        mCommandQueue.start();
+    }
 
-                mWasPlaying = true;
-                if (mHandler == null) {
-                    mHandler = new Handler();
-                }
-                mHandler.post(mUpdateCounters);
-                mBtnPlayPause.setImageDrawable(mPauseDrawable);
-                if (mCallback != null) {
-                    mCallback.onStarted(this);
-                }
-            }
-        } else {
-            workedList.add(Work.START);
+    private void performStart() {
+        if (mPlayer == null || !isBuffered()) {
+            return;
+        }
+        isError = false;
+        setErrorVisible(false);
+        PlayerEventLog.record(hashCode(), PlayerEventLog.START);
+        mPlayer.start();
+
+        mWasPlaying = true;
+        updateProgressScheduling(isControlsShown());
+        mProgressScheduler.start();
+        mMetrics.onPlaying(true);
+        if (mBtnPlayPause != null) {
+            mBtnPlayPause.setImageDrawable(mPauseDrawable);
+        }
+        if (mCallback != null) {
+            mCallback.onStarted(this);
         }
     }
 
@@ -690,15 +1356,21 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " seekTo:");
         }
+        if (mTrimmed) {
+            mInitialPosition = pos;
+            return;
+        }
         if (mPlayer == null) {
             return;
         }
-        if(workedList.isEmpty()) {
-            workedList.add(Work.SEEK);
-            mPlayer.seekTo(pos);
-            mInitialPosition = pos;
-            updateUi();
+        mMetrics.onSeekRequested();
+        if (mSeekRequestedAt == 0) {
+            mSeekRequestedAt = SystemClock.elapsedRealtime();
         }
+        PlayerEventLog.record(hashCode(), PlayerEventLog.SEEK, pos);
+        mCommandQueue.seekTo(pos);
+        mInitialPosition = pos;
+        updateUi();
     }
 
     @Override
@@ -715,10 +1387,12 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         }
         setKeepScreenOn(true);
         if (mWasPlaying) {
-            start();
-        } else {
-            Log.e(TAG, "onResume getFrame " + isPrepared());
-            getFrame();
+            if (!isPlaying()) {
+                start();
+            }
+        } else if (!mSurfaceTransition && isBuffered()) {
+            // The texture may have been recreated empty while in background
+            showPoster(Math.max(0, mInitialPosition), true);
         }
     }
 
@@ -729,7 +1403,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         setKeepScreenOn(false);
         mWasPlaying = isPlaying();
         mInitialPosition = mInitialPosition > getCurrentPosition() ? mInitialPosition : getCurrentPosition();
-        pause();
+        if (!mAudioOnly) {
+            pause();
+        }
     }
 
     @Override
@@ -737,21 +1413,28 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " pause: ");
         }
+        mStartWhenBuffered = false;
+        if (mPlayer == null || !isBuffered()) {
+            return;
+        }
+        // A start may be waiting behind a seek, the pause has to come after it
+        if (isPlaying() || mCommandQueue.isBusy()) {
+            mCommandQueue.pause();
+        }
+    }
+
+    private void performPause() {
         if (mPlayer == null || !isPlaying() || !isBuffered()) {
             return;
         }
-        if (workedList.isEmpty()) {
-            mPlayer.pause();
-            if (mCallback != null) {
-                mCallback.onPaused(this);
-            }
-            if (mHandler == null) {
-                return;
-            }
-            mHandler.removeCallbacks(mUpdateCounters);
+        PlayerEventLog.record(hashCode(), PlayerEventLog.PAUSE);
+        mPlayer.pause();
+        if (mCallback != null) {
+            mCallback.onPaused(this);
+        }
+        stopProgress();
+        if (mBtnPlayPause != null) {
             mBtnPlayPause.setImageDrawable(mPlayDrawable);
-        } else {
-            workedList.add(Work.PAUSE);
         }
     }
 
@@ -767,11 +1450,10 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             mPlayer.stop();
         } catch (Throwable ignored) {
         }
-        if (mHandler == null) {
-            return;
+        stopProgress();
+        if (mBtnPlayPause != null) {
+            mBtnPlayPause.setImageDrawable(mPauseDrawable);
         }
-        mHandler.removeCallbacks(mUpdateCounters);
-        mBtnPlayPause.setImageDrawable(mPauseDrawable);
     }
 
     @Override
@@ -784,16 +1466,22 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mIsBuffered = false;
         isError = false;
         mSource = null;
+        mIsOnPreparing = false;
+        mStartWhenBuffered = false;
+        mPrepareRequestedAt = 0;
+        mSeekRequestedAt = 0;
+        listenCoverage(null);
+        mMetrics.reset();
+        hidePoster();
+        discardNext();
         if (mPlayer != null) {
-            mPlayer.reset();
+            mCommandQueue.clear();
+            mPreparePipeline.reset(mPlayer);
         }
 
-        mProgressFrame.setVisibility(VISIBLE);
-        mTextErrorFrame.setVisibility(INVISIBLE);
-        if (mHandler != null) {
-            mHandler.removeCallbacks(mUpdateCounters);
-            mHandler = null;
-        }
+        setProgressVisible(true);
+        setErrorVisible(false);
+        stopProgress();
         updateUi();
         showControls();
         invalidateActions();
@@ -809,37 +1497,42 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
 
         mIsPrepared = false;
         isError = false;
-        mPlayer.reset();
-        mProgressFrame.setVisibility(VISIBLE);
-        mTextErrorFrame.setVisibility(INVISIBLE);
+        mCommandQueue.clear();
+        mPreparePipeline.reset(mPlayer);
+        setProgressVisible(true);
+        setErrorVisible(false);
     }
 
     public void release(boolean force) {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " release: ");
         }
+        PlayerEventLog.record(hashCode(), PlayerEventLog.RELEASE, force ? 1 : 0);
         reset();
 
         if (force) {
+            setTrimmed(false);
+            mQueue.clear();
             if (mPlayer != null) {
-                try {
-                    mPlayer.release();
-                } catch (Throwable ignored) {
-                    if (EasyVideoPlayerConfig.isDebug()) {
-                        Log.d(TAG, hashCode() + " release: error", ignored);
-                    }
-                }
-                mPlayer.setOnPreparedListener(null);
-                mPlayer.setOnBufferingUpdateListener(null);
-                mPlayer.setOnSeekCompleteListener(null);
-                mPlayer.setOnCompletionListener(null);
-                mPlayer.setOnVideoSizeChangedListener(null);
-                mPlayer.setOnErrorListener(null);
+                mPlayer.setListener(null);
+                mPreparePipeline.release(mPlayer);
                 mPlayer = null;
 
             }
             if (mSurface != null) {
                 mSurface.release();
+                mSurface = null;
+            }
+            if (mScrubPreviewLoader != null) {
+                mScrubPreviewLoader.reset();
+            }
+            if (mSurfaceTransition) {
+                mSurfaceTransition = false;
+                if (mSurfaceTexture != null && mTextureView.getSurfaceTexture() != mSurfaceTexture) {
+                    // Detached and kept for a swap that will not happen
+                    mSurfaceTexture.release();
+                }
+                mSurfaceTexture = null;
             }
             if (mTextureView != null) {
                 mTextureView.setSurfaceTextureListener(null);
@@ -852,13 +1545,183 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         release(!isVideoOnly);
     }
 
+    /**
+     * Releases the engine and the surface of a paused player off screen, keeping its source and
+     * position to prepare it again once it is back on screen or started.
+     *
+     * @return the bitmap bytes freed, or -1 if the player is in use and was left as is
+     */
+    long trimMemory() {
+        if (mPlayer == null || mTrimmed || mIsOnPreparing || mSurfaceTransition || isPlaying()
+                || mCommandQueue.isBusy() || !isOffScreen()) {
+            return -1;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " trimMemory: ");
+        }
+        return trim();
+    }
+
+    /**
+     * Releases the engine and the surface of a paused player, even on screen or preparing, keeping
+     * its source and position to prepare it again with {@link #restoreEngine()} or once started.
+     *
+     * @return true if the engine was released
+     */
+    public boolean releaseEngine() {
+        if (mPlayer == null || mTrimmed || mSurfaceTransition || isPlaying() || mSource == null) {
+            return false;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " releaseEngine: ");
+        }
+        trim();
+        return true;
+    }
+
+    /**
+     * Creates the engine released by {@link #releaseEngine()} or a memory trim again and prepares
+     * the source, does nothing if the engine was not released.
+     */
+    public void restoreEngine() {
+        restoreTrimmed();
+    }
+
+    private long trim() {
+        mInitialPosition = mInitialPosition > getCurrentPosition() ? mInitialPosition : getCurrentPosition();
+        discardNext();
+        mCommandQueue.clear();
+        mPlayer.setListener(null);
+        mPreparePipeline.release(mPlayer);
+        mPlayer = null;
+        mIsPrepared = false;
+        mIsBuffered = false;
+        mIsOnPreparing = false;
+        isError = false;
+        listenCoverage(null);
+        mMetrics.reset();
+        stopProgress();
+        // The poster bitmap belongs to the poster cache, which is trimmed on its own
+        hidePoster();
+        if (mSurface != null) {
+            mSurface.release();
+            mSurface = null;
+        }
+        long bytes = 0;
+        if (mScrubPreviewLoader != null) {
+            bytes = mScrubPreviewLoader.getCacheBytes();
+            mScrubPreviewLoader.reset();
+        }
+        setProgressVisible(true);
+        setErrorVisible(false);
+        setControlsEnabled(false);
+        setTrimmed(true);
+        PlayerEventLog.record(hashCode(), PlayerEventLog.TRIMMED, bytes);
+        return bytes;
+    }
+
+    private void restoreTrimmed() {
+        if (!mTrimmed) {
+            return;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " restoreTrimmed: " + mInitialPosition);
+        }
+        setTrimmed(false);
+        if (mSurface == null && mSurfaceTexture != null) {
+            mSurface = new Surface(mSurfaceTexture);
+        }
+        initPlayer();
+        prepare();
+    }
+
+    private void restoreIfVisible() {
+        if (mTrimmed && !isOffScreen()) {
+            restoreTrimmed();
+        }
+    }
+
+    private void setTrimmed(boolean trimmed) {
+        mTrimmed = trimmed;
+        updateScrollListening(getWindowToken() != null);
+    }
+
+    // Listened while attached only, the listener is bound to the observer of the window
+    private void updateScrollListening(boolean attached) {
+        boolean listen = attached && (mTrimmed || mAudioOnly);
+        if (listen == mScrollListening) {
+            return;
+        }
+        mScrollListening = listen;
+        if (listen) {
+            getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+        } else {
+            getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+        }
+    }
+
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+        mAudioOnly = audioOnly;
+        updateScrollListening(getWindowToken() != null);
+        updateVideoAttachment();
+    }
+
+    @Override
+    public boolean isAudioOnly() {
+        return mAudioOnly;
+    }
+
+    /**
+     * Detaches the surface from a prepared audio only player off screen and attaches it back
+     * once on screen.
+     */
+    private void updateVideoAttachment() {
+        if (mPlayer == null || !mIsPrepared || mSurfaceTransition) {
+            return;
+        }
+        boolean detach = mSurface == null || mAudioOnly && isOffScreen();
+        if (detach == mVideoDetached) {
+            return;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " video " + (detach ? "detached" : "attached"));
+        }
+        mVideoDetached = detach;
+        mPlayer.setSurface(detach ? null : mSurface);
+        mMetrics.onVideoRendered(!detach);
+    }
+
+    private boolean isOffScreen() {
+        return !isShown() || getWindowToken() == null || getWindowVisibility() != VISIBLE
+                || !getGlobalVisibleRect(mVisibleRect);
+    }
+
     @Override
     public void setVideoSizeLoading(float videoSizeLoading) {
         mVideoSizeLoading = videoSizeLoading;
+        onVideoAspectChanged();
+    }
+
+    @Override
+    public void setScaleMode(@ScaleMode int scaleMode) {
+        if (scaleMode < SCALE_MODE_FIT || scaleMode > SCALE_MODE_FIT_WIDTH) {
+            throw new IllegalArgumentException("Invalid scale mode specified.");
+        }
+        mScaleMode = scaleMode;
+        onVideoAspectChanged();
+    }
+
+    @Override
+    public int getScaleMode() {
+        return mScaleMode;
     }
 
     public void setVideoOnly(boolean videoOnly) {
         isVideoOnly = videoOnly;
+        if (mBtnFullScreen == null) {
+            return;
+        }
         if (isVideoOnly) {
             mBtnFullScreen.setImageDrawable(mFullScreenExitDrawable);
         } else {
@@ -876,12 +1739,28 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onSurfaceTextureAvailable: " + width + " " + height);
         }
-        mSurfaceAvailable = true;
-        mSurface = new Surface(surfaceTexture);
-        if (mIsPrepared) {
-            mPlayer.setSurface(mSurface);
-        } else {
-            prepare();
+        PlayerEventLog.record(hashCode(), PlayerEventLog.SURFACE_AVAILABLE, PlayerEventLog.pack(width, height));
+        PlayerTrace.beginSection(PlayerTrace.SURFACE_AVAILABLE);
+        try {
+            if (mSurfaceTransition && mSurfaceTexture != null && mSurfaceTexture != surfaceTexture) {
+                // The new window got a texture of its own, swap back to the one the decoder renders to
+                mTextureView.setSurfaceTexture(mSurfaceTexture);
+                getViewTreeObserver().removeOnPreDrawListener(mSurfaceSwapListener);
+                getViewTreeObserver().addOnPreDrawListener(mSurfaceSwapListener);
+                return;
+            }
+            mSurfaceAvailable = true;
+            mSurfaceTexture = surfaceTexture;
+            mSurface = new Surface(surfaceTexture);
+            if (mIsPrepared) {
+                // The engine renders to nothing since the previous texture was destroyed
+                mVideoDetached = true;
+                updateVideoAttachment();
+            } else {
+                prepare();
+            }
+        } finally {
+            PlayerTrace.endSection();
         }
     }
 
@@ -890,81 +1769,189 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onSurfaceTextureSizeChanged: " + width + " " + height);
         }
+        PlayerEventLog.record(hashCode(), PlayerEventLog.SURFACE_SIZE_CHANGED, PlayerEventLog.pack(width, height));
     }
 
     @Override
     public boolean onSurfaceTextureDestroyed(SurfaceTexture surfaceTexture) {
         if (EasyVideoPlayerConfig.isDebug()) {
-            Log.d(TAG, hashCode() + " onSurfaceTextureDestroyed: ");
+            Log.d(TAG, hashCode() + " onSurfaceTextureDestroyed: " + mSurfaceTransition);
         }
+        PlayerEventLog.record(hashCode(), PlayerEventLog.SURFACE_DESTROYED, mSurfaceTransition ? 1 : 0);
+        PlayerTrace.beginSection(PlayerTrace.SURFACE_DESTROYED);
+        try {
+            if (!mSurfaceTransition && mSessionKey != NO_ID && isBuffered() && !isError && isChangingConfigurations()) {
+                // Kept for the view recreated after the configuration change, see onDetachedFromWindow
+                beginSurfaceTransition();
+            }
+            if (mSurfaceTransition) {
+                mSurfaceDetachedAt = SystemClock.elapsedRealtime();
+                return false;
+            }
 
-        mSurfaceAvailable = false;
-        mSurface.release();
-        mSurface = null;
-        if (mPlayer != null) {
-            mPlayer.setSurface(mSurface);
+            mSurfaceAvailable = false;
+            if (mIsOnPreparing) {
+                // The pending prepare holds the old surface, start over once a new one is available
+                mPreparePipeline.cancel();
+                mIsOnPreparing = false;
+            }
+            if (mSurface != null) {
+                mSurface.release();
+                mSurface = null;
+            }
+            mSurfaceTexture = null;
+            if (mPlayer != null) {
+                mPlayer.setSurface(mSurface);
+                if (mIsPrepared && !mVideoDetached) {
+                    mVideoDetached = true;
+                    mMetrics.onVideoRendered(false);
+                }
+            }
+            return true;
+        } finally {
+            PlayerTrace.endSection();
         }
-        return false;
     }
 
     @Override
     public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {
+        mMetrics.onFrameRendered(mPrepareTimings);
+        if (mTransitionStartedAt != 0) {
+            mMetrics.onTransition(SystemClock.elapsedRealtime() - mTransitionStartedAt, mTransitionPrepared);
+            mTransitionStartedAt = 0;
+        }
+        if (mPosterKey != null) {
+            hidePoster();
+        }
+    }
+
+    /**
+     * Covers the texture with the frame of the source at {@code positionMs} until the player
+     * renders one, from the poster cache or, if {@code extract} is set, extracted in background.
+     */
+    private void showPoster(long positionMs, boolean extract) {
+        if (mSource == null) {
+            return;
+        }
+        PosterCache cache = PosterCache.get(getContext());
+        String key = PosterCache.keyOf(mSource, positionMs);
+        mPosterKey = key;
+        Bitmap cached = cache.getCached(key);
+        if (cached != null) {
+            setPosterBitmap(cached);
+            return;
+        }
+        cache.load(mSource, positionMs, getWidth(), extract, new PosterCache.Callback() {
+            @Override
+            public void onPoster(@NonNull String key, @NonNull Bitmap bitmap) {
+                if (key.equals(mPosterKey)) {
+                    setPosterBitmap(bitmap);
+                }
+            }
+        });
+    }
+
+    private void setPosterBitmap(@NonNull Bitmap bitmap) {
+        if (mPosterView == null) {
+            mPosterView = new ImageView(getContext());
+            mPosterView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+            // Right above the texture
+            addView(mPosterView, indexOfChild(mTextureView) + 1, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        mPosterView.setImageBitmap(bitmap);
+        mPosterView.setVisibility(VISIBLE);
+    }
 
+    private void hidePoster() {
+        mPosterKey = null;
+        if (mPosterView != null) {
+            mPosterView.setVisibility(GONE);
+            mPosterView.setImageDrawable(null);
+        }
     }
 
     @Override
-    public void onPrepared(MediaPlayer mediaPlayer) {
+    public void onPrepared(@NonNull PlaybackEngine engine) {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onPrepared: ");
         }
-        mIsOnPreparing = false;
-        mIsPrepared = true;
-        mLabelPosition.setText(Util.getDurationString(0, false));
-        mLabelDuration.setText(Util.getDurationString(mediaPlayer.getDuration(), false));
-        mSeeker.setProgress(0);
-        mSeeker.setMax(mediaPlayer.getDuration());
-        setControlsEnabled(true);
+        PlayerTrace.beginSection(PlayerTrace.PREPARED);
+        try {
+            mIsOnPreparing = false;
+            mIsPrepared = true;
+            if (mPrepareRequestedAt != 0) {
+                PlayerEventLog.record(hashCode(), PlayerEventLog.PREPARED, SystemClock.elapsedRealtime() - mPrepareRequestedAt);
+                mPrepareRequestedAt = 0;
+            }
+            if (mPrepareTimings != null) {
+                mPrepareTimings.markPrepared();
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, hashCode() + " prepare timings: " + mPrepareTimings);
+                }
+            }
+            if (mSeeker != null) {
+                mPositionFormatter.setText(mLabelPosition, 0, false);
+                mDurationFormatter.setText(mLabelDuration, engine.getDuration(), false);
+                mSeeker.setProgress(0);
+                mSeeker.setMax(engine.getDuration());
+            }
+            setControlsEnabled(true);
+            mVideoWidth = engine.getVideoWidth();
+            mVideoHeight = engine.getVideoHeight();
 
-        if (isBuffered()) {
-            mIsBuffered = false;
-            onBufferingUpdate(mPlayer, 100);
+            if (isBuffered()) {
+                mIsBuffered = false;
+                onBufferingUpdate(mPlayer, 100);
+            }
+        } finally {
+            PlayerTrace.endSection();
         }
     }
 
-    private void getFrame() {
-        if (isBuffered()) {
-            mPlayer.start();
-            if (mInitialPosition >= 0) {
-                seekTo(mInitialPosition);
+    @Override
+    public void onSeekComplete(@NonNull PlaybackEngine engine) {
+        PlayerTrace.beginSection(PlayerTrace.SEEK_COMPLETE);
+        try {
+            mCommandQueue.onSeekComplete();
+            if (!mCommandQueue.isBusy()) {
+                mMetrics.onSeekComplete();
+                if (mSeekRequestedAt != 0) {
+                    PlayerEventLog.record(hashCode(), PlayerEventLog.SEEK_COMPLETE,
+                            SystemClock.elapsedRealtime() - mSeekRequestedAt);
+                    mSeekRequestedAt = 0;
+                }
             }
-            mPlayer.pause();
+        } finally {
+            PlayerTrace.endSection();
         }
     }
 
     @Override
-    public void onSeekComplete(MediaPlayer mp) {
-        workedList.pop();
-        if (!workedList.isEmpty()) {
-            switch (workedList.pop()) {
-                case START:
-                    start();
-                    break;
-                case PAUSE:
-                    pause();
-                    break;
-            }
+    public boolean onInfo(@NonNull PlaybackEngine engine, int what, int extra) {
+        if (what == MediaPlayer.MEDIA_INFO_BUFFERING_START) {
+            mMetrics.onRebufferStart();
+            PlayerEventLog.record(hashCode(), PlayerEventLog.REBUFFER_START);
+        } else if (what == MediaPlayer.MEDIA_INFO_BUFFERING_END) {
+            mMetrics.onRebufferEnd();
+            PlayerEventLog.record(hashCode(), PlayerEventLog.REBUFFER_END);
         }
+        return false;
     }
 
     @Override
-    public void onBufferingUpdate(MediaPlayer mediaPlayer, int percent) {
+    public void onBufferingUpdate(@NonNull PlaybackEngine engine, int percent) {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onBufferingUpdate: "+percent);
         }
 
         if (!mIsBuffered) {
             mIsBuffered = true;
-            if (mAutoPlay) {
+            // The video size only applies from now on
+            onVideoAspectChanged();
+            boolean autoPlay = mAutoPlay || mStartWhenBuffered;
+            mStartWhenBuffered = false;
+            if (autoPlay) {
 
                 if (!mControlsDisabled && mHideControlsOnPlay) {
                     hideControls();
@@ -974,10 +1961,10 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
                     seekTo(mInitialPosition);
                 }
             } else {
-                // Hack to show first frame, is there another way?
-                Log.e(TAG, "onBufferingUpdate getFrame" + percent);
-
-                getFrame();
+                showPoster(Math.max(0, mInitialPosition), true);
+                if (mInitialPosition > 0) {
+                    seekTo(mInitialPosition);
+                }
             }
             if (EasyVideoPlayerConfig.isDebug()) {
                 Log.d(TAG, hashCode() + " mCallback: " + (mCallback != null));
@@ -985,22 +1972,29 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             if (mCallback != null) {
                 mCallback.onPrepared(this);
             }
+            prepareNext();
         }
-        if (mSeeker != null) {
-            if (percent == 100) {
+        if (percent == 100) {
+            if (mSeeker != null && mCacheCoverage == null) {
                 mSeeker.setSecondaryProgress(0);
-                displayIconPlayPause();
-            } else {
-                int percentSeeker = (int) (mSeeker.getMax() * (percent / 100f));
-                mSeeker.setSecondaryProgress(percentSeeker);
-                if (percentSeeker < mediaPlayer.getCurrentPosition()) {
-                    mProgressFrame.setVisibility(VISIBLE);
-                    if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
-                        mBtnPlayPause.setVisibility(View.INVISIBLE);
-                    }
+            }
+            displayIconPlayPause();
+        } else {
+            int bufferedPosition = (int) (engine.getDuration() * (percent / 100f));
+            if (mSeeker != null) {
+                if (mCacheCoverage == null) {
+                    mSeeker.setSecondaryProgress((int) (mSeeker.getMax() * (percent / 100f)));
                 } else {
-                    displayIconPlayPause();
+                    updateSecondaryProgress();
+                }
+            }
+            if (bufferedPosition < engine.getCurrentPosition()) {
+                setProgressVisible(true);
+                if (mBtnPlayPause != null && mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
+                    mBtnPlayPause.setVisibility(View.INVISIBLE);
                 }
+            } else {
+                displayIconPlayPause();
             }
         }
         if (mCallback != null) {
@@ -1011,7 +2005,7 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     private void displayIconPlayPause() {
         if (mProgressFrame != null && mProgressFrame.getVisibility() == VISIBLE) {
             mProgressFrame.setVisibility(INVISIBLE);
-            if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
+            if (mBtnPlayPause != null && mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
                 if (isControlsShown()) {
                     mBtnPlayPause.setVisibility(View.VISIBLE);
                 } else {
@@ -1022,28 +2016,35 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     }
 
     private void displayMessageError() {
-        mProgressFrame.setVisibility(INVISIBLE);
-        mTextErrorFrame.setVisibility(VISIBLE);
-        mTextError.setText(errorMessage);
-        if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
+        setProgressVisible(false);
+        setErrorVisible(true);
+        if (mTextError != null) {
+            mTextError.setText(errorMessage);
+        }
+        if (mBtnPlayPause != null && mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
             mBtnPlayPause.setVisibility(View.INVISIBLE);
         }
     }
 
     @Override
-    public void onCompletion(MediaPlayer mediaPlayer) {
+    public void onCompletion(@NonNull PlaybackEngine engine) {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onCompletion: ");
         }
-        if (mHandler != null) {
-            mHandler.removeCallbacks(mUpdateCounters);
+        PlayerEventLog.record(hashCode(), PlayerEventLog.COMPLETION);
+        if (!isError && advance()) {
+            return;
         }
+        stopProgress();
         if (isError) {
             displayMessageError();
-            mPlayer.reset();
+            mCommandQueue.clear();
+            mPreparePipeline.reset(mPlayer);
         } else {
-            mBtnPlayPause.setImageDrawable(mPlayDrawable);
-            mSeeker.setProgress(0);
+            if (mSeeker != null) {
+                mBtnPlayPause.setImageDrawable(mPlayDrawable);
+                mSeeker.setProgress(0);
+            }
             showControls();
         }
         updateUi();
@@ -1053,19 +2054,26 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     }
 
     @Override
-    public void onVideoSizeChanged(MediaPlayer mediaPlayer, int width, int height) {
+    public void onVideoSizeChanged(@NonNull PlaybackEngine engine, int width, int height) {
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " onVideoSizeChanged: " + width + " " + height);
         }
+        if (width != mVideoWidth || height != mVideoHeight) {
+            mVideoWidth = width;
+            mVideoHeight = height;
+            onVideoAspectChanged();
+        }
     }
 
     @Override
-    public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+    public boolean onError(@NonNull PlaybackEngine engine, int what, int extra) {
         if (what == -38) {
             // Error code -38 happens on some Samsung devices
             // Just ignore it
             return false;
         }
+        PlayerEventLog.record(hashCode(), PlayerEventLog.ERROR, PlayerEventLog.pack(what, extra));
+        mPrepareRequestedAt = 0;
         String errorMsg = "Preparation/playback error (" + what + " " + extra + "): ";
         errorMessage = getContext().getString(R.string.evp_error);
         switch (what) {
@@ -1109,45 +2117,101 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mTextureView = new TextureView(getContext());
         addView(mTextureView, textureLp);
 
-        LayoutInflater li = LayoutInflater.from(getContext());
-
-        // Inflate and add progress
-        mProgressFrame = li.inflate(R.layout.evp_include_progress, this, false);
-        addView(mProgressFrame);
+        // The overlays only hold their place in the hierarchy until first used, a player whose
+        // controls are disabled never inflates them
+        mProgressStub = addStub(R.layout.evp_include_progress, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
 
         // Instantiate and add click frame (used to toggle controls)
         mClickFrame = new FrameLayout(getContext());
-        ((FrameLayout) mClickFrame).setForeground(Util.resolveDrawable(getContext(), R.attr.selectableItemBackground));
+        ((FrameLayout) mClickFrame).setForeground(ThemeResources.resolveDrawable(getContext(), R.attr.selectableItemBackground));
         addView(mClickFrame, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.MATCH_PARENT));
 
-        // Inflate controls
-        mControlsFrame = li.inflate(R.layout.evp_include_controls, this, false);
         FrameLayout.LayoutParams controlsLp = new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.WRAP_CONTENT);
         controlsLp.gravity = Gravity.BOTTOM;
-        addView(mControlsFrame, controlsLp);
+        mControlsStub = addStub(R.layout.evp_include_controls, controlsLp);
+
+        mTextErrorStub = addStub(R.layout.evp_include_text_error, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        int buttonSize = getResources().getDimensionPixelSize(R.dimen.evp_button_size);
+        mBtnPlayPauseStub = addStub(R.layout.evp_include_btn_play_pause,
+                new FrameLayout.LayoutParams(buttonSize, buttonSize, Gravity.CENTER));
+
         if (mControlsDisabled) {
             mClickFrame.setOnClickListener(null);
-            mControlsFrame.setVisibility(View.GONE);
         } else {
-            enableControls(true);
+            // Inflated once attached, unless disabled by then
+            enableControls(false);
+        }
+    }
+
+    private ViewStub addStub(@LayoutRes int layout, @NonNull FrameLayout.LayoutParams lp) {
+        ViewStub stub = new ViewStub(getContext(), layout);
+        addView(stub, lp);
+        return stub;
+    }
+
+    private void setProgressVisible(boolean visible) {
+        if (visible && mProgressFrame == null && mProgressStub != null) {
+            mProgressFrame = mProgressStub.inflate();
+            mProgressStub = null;
+        }
+        if (mProgressFrame != null) {
+            mProgressFrame.setVisibility(visible ? VISIBLE : INVISIBLE);
+        }
+    }
+
+    private void setErrorVisible(boolean visible) {
+        if (visible && mTextErrorFrame == null && mTextErrorStub != null) {
+            mTextErrorFrame = mTextErrorStub.inflate();
+            mTextErrorStub = null;
+            mTextErrorFrame.setOnClickListener(this);
+            mTextError = (TextView) mTextErrorFrame.findViewById(R.id.title_error);
+        }
+        if (mTextErrorFrame != null) {
+            mTextErrorFrame.setVisibility(visible ? VISIBLE : INVISIBLE);
+        }
+    }
+
+    private void inflateControls() {
+        if (mControlsFrame != null || mControlsStub == null) {
+            return;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, hashCode() + " inflateControls: ");
+        }
+        Context context = getContext();
+        if (mRestartDrawable == null) {
+            mRestartDrawable = ThemeResources.getDrawable(context, R.drawable.evp_action_restart);
+        }
+        if (mPlayDrawable == null) {
+            mPlayDrawable = ThemeResources.getDrawable(context, R.drawable.evp_action_play);
+        }
+        if (mPauseDrawable == null) {
+            mPauseDrawable = ThemeResources.getDrawable(context, R.drawable.evp_action_pause);
+        }
+        if (mFullScreenDrawable == null) {
+            mFullScreenDrawable = ThemeResources.getDrawable(context, R.drawable.ic_fullscreen);
+        }
+        if (mFullScreenExitDrawable == null) {
+            mFullScreenExitDrawable = ThemeResources.getDrawable(context, R.drawable.ic_fullscreen_exit);
         }
 
-        mTextErrorFrame = li.inflate(R.layout.evp_include_text_error, this, false);
-        mTextErrorFrame.setOnClickListener(this);
-        addView(mTextErrorFrame);
-        mTextError = (TextView) mTextErrorFrame.findViewById(R.id.title_error);
+        mControlsFrame = mControlsStub.inflate();
+        mControlsStub = null;
 
         // Retrieve controls
         mSeeker = (SeekBar) mControlsFrame.findViewById(R.id.seeker);
         mSeeker.setOnSeekBarChangeListener(this);
 
         mLabelPosition = (TextView) mControlsFrame.findViewById(R.id.position);
-        mLabelPosition.setText(Util.getDurationString(0, false));
+        mPositionFormatter.setText(mLabelPosition, 0, false);
 
         mLabelDuration = (TextView) mControlsFrame.findViewById(R.id.duration);
-        mLabelDuration.setText(Util.getDurationString(0, true));
+        mDurationFormatter.setText(mLabelDuration, 0, true);
 
         invalidateThemeColors();
 
@@ -1159,13 +2223,14 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mBtnRetry.setOnClickListener(this);
         mBtnRetry.setText(mRetryText);
 
-        mBtnPlayPauseVideo = (ImageButton) li.inflate(R.layout.evp_include_btn_play_pause, this, false);
-        addView(mBtnPlayPauseVideo);
+        Drawable playPause = isPlaying() ? mPauseDrawable : mPlayDrawable;
+        mBtnPlayPauseVideo = (ImageButton) mBtnPlayPauseStub.inflate();
+        mBtnPlayPauseStub = null;
         mBtnPlayPauseVideo.setOnClickListener(this);
-        mBtnPlayPauseVideo.setImageDrawable(mPlayDrawable);
+        mBtnPlayPauseVideo.setImageDrawable(playPause);
         mBtnPlayPauseControl = (ImageButton) mControlsFrame.findViewById(R.id.btnPlayPauseControl);
         mBtnPlayPauseControl.setOnClickListener(this);
-        mBtnPlayPauseControl.setImageDrawable(mPlayDrawable);
+        mBtnPlayPauseControl.setImageDrawable(playPause);
 
         if (mLeftAction == LEFT_ACTION_NONE && mRightAction == RIGHT_ACTION_NONE) {
             mBtnPlayPause = mBtnPlayPauseVideo;
@@ -1187,8 +2252,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         mBtnFullScreen.setOnClickListener(this);
         setVideoOnly(isVideoOnly);
 
-        setControlsEnabled(false);
+        setControlsEnabled(mControlsEnabled);
         invalidateActions();
+        updateUi();
     }
 
     public void initPlayer() {
@@ -1196,17 +2262,22 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             Log.d(TAG, hashCode() + " initPlayer: ");
         }
         if (!isBuffered()) {
-            mHandler = new Handler();
-            mPlayer = new MediaPlayer();
-            mPlayer.setOnPreparedListener(this);
-            mPlayer.setOnBufferingUpdateListener(this);
-            mPlayer.setOnSeekCompleteListener(this);
-            mPlayer.setOnCompletionListener(this);
-            mPlayer.setOnVideoSizeChangedListener(this);
-            mPlayer.setOnErrorListener(this);
-            mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            boolean replaced = mPlayer != null;
+            if (replaced) {
+                // Called again when the view moves to another fragment, the engine is not buffered
+                // yet and a fresh one prepares the source again
+                mCommandQueue.clear();
+                mPlayer.setListener(null);
+                mPreparePipeline.release(mPlayer);
+                mIsPrepared = false;
+                mIsOnPreparing = false;
+            }
+            mPlayer = EasyVideoPlayerConfig.getPlaybackEngineFactory().create(getContext());
+            mPlayer.setListener(this);
             mTextureView.setSurfaceTextureListener(this);
-
+            if (replaced) {
+                prepare();
+            }
         }
     }
 
@@ -1263,23 +2334,88 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
 
     @Override
     public void onProgressChanged(SeekBar seekBar, int value, boolean fromUser) {
-        if (fromUser) {
+        if (!fromUser) {
+            return;
+        }
+        if (mScrubbing && mScrubPreviewEnabled && mSource != null) {
+            showScrubPreview(value);
+        } else {
             seekTo(value);
         }
     }
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
+        mScrubbing = true;
         mWasPlaying = isPlaying();
-        if (mWasPlaying && isBuffered()) {
-            mPlayer.pause();
+        // Through the queue so that the pause is not overtaken by a start waiting behind a seek
+        if (isBuffered() && (mWasPlaying || mCommandQueue.isBusy())) {
+            mCommandQueue.pause();
+        }
+        if (mScrubPreviewEnabled && mSource != null) {
+            showScrubPreview(seekBar.getProgress());
         }
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
+        mScrubbing = false;
+        if (mScrubPreviewFrame != null && mScrubPreviewFrame.getVisibility() == VISIBLE) {
+            hideScrubPreview();
+            seekTo(seekBar.getProgress());
+        }
+        // Queued behind the last seek of the scrub, playback resumes at the released position
         if (mWasPlaying && isBuffered()) {
-            mPlayer.start();
+            mCommandQueue.start();
+        }
+    }
+
+    private void showScrubPreview(int position) {
+        if (mScrubPreviewFrame == null) {
+            mScrubPreviewFrame = LayoutInflater.from(getContext()).inflate(R.layout.evp_include_scrub_preview, this, false);
+            ((FrameLayout.LayoutParams) mScrubPreviewFrame.getLayoutParams()).gravity = Gravity.BOTTOM | Gravity.LEFT;
+            addView(mScrubPreviewFrame);
+            mScrubPreviewImage = (ImageView) mScrubPreviewFrame.findViewById(R.id.scrubPreviewImage);
+            mScrubPreviewTime = (TextView) mScrubPreviewFrame.findViewById(R.id.scrubPreviewTime);
+        }
+        if (mScrubPreviewLoader == null) {
+            int width = getResources().getDimensionPixelSize(R.dimen.evp_scrub_preview_width);
+            mScrubPreviewLoader = new ScrubPreviewLoader(getContext(), width, new ScrubPreviewLoader.Listener() {
+                @Override
+                public void onScrubPreview(long positionMs, @NonNull Bitmap bitmap) {
+                    if (mScrubPreviewImage != null) {
+                        mScrubPreviewImage.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+        if (mScrubPreviewFrame.getVisibility() != VISIBLE) {
+            mScrubPreviewImage.setImageDrawable(null);
+            mScrubPreviewFrame.setVisibility(VISIBLE);
+        }
+        mScrubFormatter.setText(mScrubPreviewTime, position, false);
+
+        // Center the preview on the thumb, within the player bounds
+        int track = mSeeker.getWidth() - mSeeker.getPaddingLeft() - mSeeker.getPaddingRight();
+        float x = mSeeker.getPaddingLeft() + (mSeeker.getMax() > 0 ? (float) track * position / mSeeker.getMax() : 0);
+        View view = mSeeker;
+        while (view != this && view.getParent() instanceof View) {
+            x += view.getLeft();
+            view = (View) view.getParent();
+        }
+        int width = mScrubPreviewFrame.getLayoutParams().width;
+        mScrubPreviewFrame.setTranslationX(Math.max(0, Math.min(getWidth() - width, x - width / 2f)));
+        mScrubPreviewFrame.setTranslationY(-mControlsFrame.getHeight());
+
+        mScrubPreviewLoader.request(mSource, position, getDuration());
+    }
+
+    private void hideScrubPreview() {
+        if (mScrubPreviewFrame != null) {
+            mScrubPreviewFrame.setVisibility(GONE);
+        }
+        if (mScrubPreviewLoader != null) {
+            mScrubPreviewLoader.cancel();
         }
     }
 
@@ -1287,21 +2423,34 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
         if (EasyVideoPlayerConfig.isDebug()) {
             Log.d(TAG, hashCode() + " detach: ");
         }
+        PlayerRegistry.unregister(this);
         release(true);
-        mTextErrorFrame.setOnClickListener(null);
-        mSeeker.setOnSeekBarChangeListener(null);
-        mBtnPlayPauseVideo.setOnClickListener(null);
-        mBtnPlayPauseControl.setOnClickListener(null);
-        mBtnRestart.setOnClickListener(null);
-        mBtnSubmit.setOnClickListener(null);
+        if (mTextErrorFrame != null) {
+            mTextErrorFrame.setOnClickListener(null);
+        }
+        if (mSeeker != null) {
+            mSeeker.setOnSeekBarChangeListener(null);
+            mBtnPlayPauseVideo.setOnClickListener(null);
+            mBtnPlayPauseControl.setOnClickListener(null);
+            mBtnRestart.setOnClickListener(null);
+            mBtnSubmit.setOnClickListener(null);
+            mBtnFullScreen.setOnClickListener(null);
+        }
         mClickFrame.setOnTouchListener(null);
-        mBtnFullScreen.setOnClickListener(null);
         mCallback = null;
         mInternalCallback = null;
         removeAllViews();
+        // Out of the hierarchy, they can no longer inflate
+        mProgressStub = null;
+        mControlsStub = null;
+        mTextErrorStub = null;
+        mBtnPlayPauseStub = null;
     }
 
     private void invalidateActions() {
+        if (mControlsFrame == null) {
+            return;
+        }
         switch (mLeftAction) {
             case LEFT_ACTION_NONE:
                 mBtnRetry.setVisibility(View.GONE);
@@ -1344,71 +2493,60 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
 
     }
 
-    private void adjustAspectRatio(int viewWidth, int viewHeight, int videoWidth, int videoHeight, int widthMeasureSpec, int heightMeasureSpec) {
+    /**
+     * @return whether the texture layout or transform changed
+     */
+    private boolean adjustAspectRatio(int widthMeasureSpec, int heightMeasureSpec) {
         double aspectRatio;
-        if (videoWidth == 0 || videoHeight == 0) {
-            aspectRatio = 1f / mVideoSizeLoading;
+        if (!isBuffered() || mVideoWidth == 0 || mVideoHeight == 0) {
+            aspectRatio = mVideoSizeLoading > 0 ? 1f / mVideoSizeLoading : 10f / 16f;
         } else {
-            aspectRatio = (double) videoHeight / videoWidth;
+            aspectRatio = (double) mVideoHeight / mVideoWidth;
         }
 
-        int newWidth, newHeight;
-
-        if (viewHeight > (int) (viewWidth * aspectRatio) || viewHeight == 0) {
-            newWidth = viewWidth;
-            newHeight = (int) (viewWidth * aspectRatio);
-        } else {
-            newWidth = (int) (viewHeight / aspectRatio);
-            newHeight = viewHeight;
+        boolean wrapWidth = widthMeasureSpec != 0 && !isVideoOnly && (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.AT_MOST || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED);
+        boolean wrapHeight = heightMeasureSpec != 0 && !isVideoOnly && (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.AT_MOST || MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) || heightMeasureSpec == 0;
+        if (!mVideoLayout.compute(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec),
+                aspectRatio, wrapWidth, wrapHeight, mScaleMode)) {
+            return false;
         }
 
-        int xoff = 0;
-        int yoff = 0;
-        ViewGroup.LayoutParams layoutParamsTexture = mTextureView.getLayoutParams();
-        if (widthMeasureSpec != 0 && !isVideoOnly && (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.AT_MOST || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED)) {
-            ViewGroup.LayoutParams layoutParamsControls = mControlsFrame.getLayoutParams();
-            layoutParamsControls.width = newWidth;
-            mControlsFrame.setLayoutParams(layoutParamsControls);
-
-            layoutParamsTexture.width = newWidth;
-            newWidth = viewWidth;
-        } else {
-            layoutParamsTexture.width = ViewGroup.LayoutParams.MATCH_PARENT;
-            xoff = (viewWidth - newWidth) / 2;
+        // Called from onMeasure before the children are measured, so the layout params are updated
+        // in place: setLayoutParams() would request yet another layout pass
+        View controls = mControlsFrame != null ? mControlsFrame : mControlsStub;
+        if (mVideoLayout.mWrapWidth && controls != null) {
+            // The stub hands its layout params over to the inflated controls
+            controls.getLayoutParams().width = mVideoLayout.mVideoWidth;
         }
+        ViewGroup.LayoutParams layoutParamsTexture = mTextureView.getLayoutParams();
+        layoutParamsTexture.width = mVideoLayout.mTextureWidth;
+        layoutParamsTexture.height = mVideoLayout.mTextureHeight;
 
+        mTransform.setScale(mVideoLayout.mScaleX, mVideoLayout.mScaleY);
+        mTransform.postTranslate(mVideoLayout.mOffsetX, mVideoLayout.mOffsetY);
+        mTextureView.setTransform(mTransform);
+        return true;
+    }
 
-        if (heightMeasureSpec != 0 && !isVideoOnly && (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.AT_MOST || MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) || heightMeasureSpec == 0) {
-            layoutParamsTexture.height = newHeight;
-            newHeight = viewHeight;
-        } else {
-
-            layoutParamsTexture.height = ViewGroup.LayoutParams.MATCH_PARENT;
-            yoff = (viewHeight - newHeight) / 2;
+    /**
+     * Applies a new video aspect or scale mode. Unless the player wraps the video, only the
+     * texture transform changes and no layout pass is needed.
+     */
+    private void onVideoAspectChanged() {
+        if (!mMeasured) {
+            return;
         }
-
-        if (viewHeight == 0) {
-            viewHeight = 1;
-            newHeight = 1;
+        if (adjustAspectRatio(mWidthMeasureSpec, mHeightMeasureSpec) && (mVideoLayout.mWrapWidth || mVideoLayout.mWrapHeight)) {
+            requestLayout();
         }
-
-        Matrix txform = new Matrix();
-        mTextureView.getTransform(txform);
-        txform.setScale((float) newWidth / viewWidth, (float) newHeight / viewHeight);
-        txform.postTranslate(xoff, yoff);
-        mTextureView.setTransform(txform);
-        mTextureView.setLayoutParams(layoutParamsTexture);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int videoWidth = 0;
-        int videoHeight = 0;
-        if (isBuffered()) {
-            videoWidth = mPlayer.getVideoWidth();
-            videoHeight = mPlayer.getVideoHeight();
-        }
-        adjustAspectRatio(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec), videoWidth, videoHeight, widthMeasureSpec, heightMeasureSpec);
+        mMeasured = true;
+        mWidthMeasureSpec = widthMeasureSpec;
+        mHeightMeasureSpec = heightMeasureSpec;
+        adjustAspectRatio(widthMeasureSpec, heightMeasureSpec);
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
@@ -1424,7 +2562,7 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     }
 
     private static void setTint(@NonNull SeekBar seekBar, @ColorInt int color) {
-        ColorStateList s1 = ColorStateList.valueOf(color);
+        ColorStateList s1 = ThemeResources.getTint(color);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             seekBar.setThumbTintList(s1);
             seekBar.setProgressTintList(s1);
@@ -1442,6 +2580,9 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     }
 
     private void invalidateThemeColors() {
+        if (mControlsFrame == null) {
+            return;
+        }
         int labelColor = Util.isColorDark(mThemeColor) ? Color.WHITE : Color.BLACK;
         mControlsFrame.setBackgroundColor(Util.adjustAlpha(mThemeColor, 0.85f));
         mLabelDuration.setTextColor(labelColor);
@@ -1456,6 +2597,15 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             Log.d(TAG, hashCode() + " onAttachedToWindow: ");
         }
         super.onAttachedToWindow();
+        if (!mControlsDisabled && mControlsFrame == null) {
+            showControls();
+        }
+        updateProgressScheduling(isControlsShown());
+        if (mSurfaceTransition && mSurfaceTexture != null && mTextureView.getSurfaceTexture() == null) {
+            mTextureView.setSurfaceTexture(mSurfaceTexture);
+            getViewTreeObserver().addOnPreDrawListener(mSurfaceSwapListener);
+        }
+        updateScrollListening(true);
     }
 
     @Override
@@ -1464,6 +2614,11 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
             Log.d(TAG, hashCode() + " onDetachedFromWindow: ");
         }
         super.onDetachedFromWindow();
+        updateProgressScheduling(false);
+        if (mSurfaceTransition && mSessionKey != NO_ID && isBuffered() && !isError && isChangingConfigurations()) {
+            retainSession();
+        }
+        updateScrollListening(false);
     }
 
     @Nullable
@@ -1491,18 +2646,36 @@ public class PlayerView extends FrameLayout implements IUserMethods, TextureView
     @Override
     protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
         super.onVisibilityChanged(changedView, visibility);
-        if (visibility == GONE) {
+        updateProgressScheduling(isControlsShown());
+        if (visibility == GONE && !mAudioOnly) {
             pause();
+        } else if (visibility == VISIBLE) {
+            restoreIfVisible();
         }
+        updateVideoAttachment();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgressScheduling(isControlsShown());
+        if (visibility == VISIBLE) {
+            restoreIfVisible();
+        }
+        updateVideoAttachment();
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
-        Rect rect = new Rect();
-        getGlobalVisibleRect(rect);
-        if (rect.bottom < 0) {
-            pause();
+        getGlobalVisibleRect(mVisibleRect);
+        if (mVisibleRect.bottom < 0) {
+            if (!mAudioOnly) {
+                pause();
+            }
+        } else {
+            restoreIfVisible();
         }
+        updateVideoAttachment();
     }
 }
@@ -0,0 +1,269 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Poster frames shown over the TextureView until the player renders its own frame. Posters are
+ * extracted with a MediaMetadataRetriever on a background thread and kept in a memory LRU backed
+ * by a bounded disk LRU, both keyed by source and position rounded to the second.
+ */
+class PosterCache {
+
+    private static final String TAG = "PosterCache";
+    private static final String DIRECTORY = "easyvideoplayer-posters";
+    private static final String EXTENSION = ".jpg";
+    private static final long BUCKET_MS = 1000;
+    private static final int MAX_MEMORY_BYTES = 4 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 16 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+
+    interface Callback {
+
+        void onPoster(@NonNull String key, @NonNull Bitmap bitmap);
+    }
+
+    private static PosterCache sInstance;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "EasyVideoPlayer-poster");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Context mContext;
+    private final File mDirectory;
+    private final LruCache<String, Bitmap> mMemory;
+    // Disk entries in access order with their size, only touched on the executor
+    private final LinkedHashMap<String, Long> mDisk = new LinkedHashMap<>(16, .75f, true);
+    private long mDiskSize;
+    private boolean mDiskLoaded;
+
+    @NonNull
+    static synchronized PosterCache get(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new PosterCache(context.getApplicationContext() != null ? context.getApplicationContext() : context);
+        }
+        return sInstance;
+    }
+
+    private PosterCache(@NonNull Context context) {
+        mContext = context;
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+        int maxBytes = (int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 32);
+        mMemory = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * Drops the posters kept in memory, the disk ones stay.
+     *
+     * @return the bytes of the bitmaps dropped
+     */
+    static synchronized long trimMemory() {
+        if (sInstance == null) {
+            return 0;
+        }
+        long bytes = sInstance.mMemory.size();
+        sInstance.mMemory.evictAll();
+        return bytes;
+    }
+
+    @NonNull
+    static String keyOf(@NonNull Uri source, long positionMs) {
+        return HttpCacheStore.keyOf(source + "#" + Math.max(0, positionMs) / BUCKET_MS);
+    }
+
+    @Nullable
+    Bitmap getCached(@NonNull String key) {
+        return mMemory.get(key);
+    }
+
+    /**
+     * Delivers the poster of {@code source} at {@code positionMs} on the main thread, from disk or,
+     * if {@code extract} is set, extracted and scaled down to {@code maxWidth}.
+     */
+    void load(@NonNull final Uri source, final long positionMs, final int maxWidth, final boolean extract,
+              @NonNull final Callback callback) {
+        final String key = keyOf(source, positionMs);
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = mMemory.get(key);
+                if (bitmap == null) {
+                    bitmap = readDisk(key);
+                }
+                if (bitmap == null && extract) {
+                    bitmap = extract(source, positionMs, maxWidth);
+                    if (bitmap != null) {
+                        writeDisk(key, bitmap);
+                    }
+                }
+                if (bitmap == null) {
+                    return;
+                }
+                mMemory.put(key, bitmap);
+                final Bitmap result = bitmap;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPoster(key, result);
+                    }
+                });
+            }
+        });
+    }
+
+    @Nullable
+    private Bitmap extract(@NonNull Uri source, long positionMs, int maxWidth) {
+        MediaMetadataRetriever retriever = null;
+        try {
+            retriever = ScrubPreviewLoader.openRetriever(mContext, source);
+            Bitmap frame = retriever.getFrameAtTime(positionMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null || maxWidth <= 0 || frame.getWidth() <= maxWidth) {
+                return frame;
+            }
+            int height = Math.max(1, frame.getHeight() * maxWidth / frame.getWidth());
+            Bitmap scaled = Bitmap.createScaledBitmap(frame, maxWidth, height, true);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            return scaled;
+        } catch (IOException | RuntimeException e) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "extract " + source + " " + positionMs + ": error", e);
+            }
+            return null;
+        } finally {
+            if (retriever != null) {
+                try {
+                    retriever.release();
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private Bitmap readDisk(@NonNull String key) {
+        loadDisk();
+        if (mDisk.get(key) == null) {
+            return null;
+        }
+        File file = new File(mDirectory, key + EXTENSION);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            removeDisk(key);
+            return null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    private void writeDisk(@NonNull String key, @NonNull Bitmap bitmap) {
+        loadDisk();
+        File file = new File(mDirectory, key + EXTENSION);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "writeDisk: error", e);
+            }
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        Long previous = mDisk.remove(key);
+        if (previous != null) {
+            mDiskSize -= previous;
+        }
+        mDisk.put(key, file.length());
+        mDiskSize += file.length();
+        while (mDiskSize > MAX_DISK_BYTES && !mDisk.isEmpty()) {
+            removeDisk(mDisk.keySet().iterator().next());
+        }
+    }
+
+    private void removeDisk(@NonNull String key) {
+        Long size = mDisk.remove(key);
+        if (size != null) {
+            mDiskSize -= size;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, key + EXTENSION).delete();
+    }
+
+    private void loadDisk() {
+        if (mDiskLoaded) {
+            return;
+        }
+        mDiskLoaded = true;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create poster directory " + mDirectory);
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                mDisk.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+                mDiskSize += file.length();
+            }
+        }
+    }
+}
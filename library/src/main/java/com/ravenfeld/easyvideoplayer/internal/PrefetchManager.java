@@ -0,0 +1,198 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the beginning of upcoming http sources into the cache by reading them through the cache
+ * proxy, so that a later prepare of the same source is served from disk.
+ */
+public class PrefetchManager {
+
+    private static final String TAG = "PrefetchManager";
+    private static final int DEFAULT_MAX_CONCURRENT = 2;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int TIMEOUT = 15000;
+
+    private static final PrefetchManager INSTANCE = new PrefetchManager();
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<Uri, Task> mTasks = new HashMap<>();
+
+    public static PrefetchManager get() {
+        return INSTANCE;
+    }
+
+    private PrefetchManager() {
+        mExecutor = new ThreadPoolExecutor(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_CONCURRENT, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "EasyVideoPlayer-prefetch-" + mCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one prefetch must be allowed.");
+        }
+        if (maxConcurrent > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(maxConcurrent);
+            mExecutor.setCorePoolSize(maxConcurrent);
+        } else {
+            mExecutor.setCorePoolSize(maxConcurrent);
+            mExecutor.setMaximumPoolSize(maxConcurrent);
+        }
+    }
+
+    /**
+     * Queues the download of the first {@code bytes} of {@code source} into the http cache.
+     *
+     * @return false if the source cannot be prefetched: the cache is disabled or it is not an
+     * http/https source
+     */
+    public boolean prefetch(@NonNull Uri source, long bytes) {
+        HttpCacheProxy proxy = HttpCacheProxy.get();
+        if (proxy == null || bytes <= 0 || PreparePipeline.resolveSourceType(source) != PreparePipeline.SOURCE_HTTP) {
+            return false;
+        }
+        synchronized (mTasks) {
+            Task task = mTasks.get(source);
+            if (task != null && !task.mFuture.isDone() && task.mBytes >= bytes) {
+                return true;
+            }
+            if (task != null) {
+                task.cancel();
+            }
+            task = new Task(proxy, source, bytes);
+            mTasks.put(source, task);
+            task.mFuture = mExecutor.submit(task);
+        }
+        return true;
+    }
+
+    public void cancel(@NonNull Uri source) {
+        synchronized (mTasks) {
+            Task task = mTasks.remove(source);
+            if (task != null) {
+                task.cancel();
+            }
+        }
+    }
+
+    public void cancelAll() {
+        synchronized (mTasks) {
+            Iterator<Task> it = mTasks.values().iterator();
+            while (it.hasNext()) {
+                it.next().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private void onTaskDone(@NonNull Task task) {
+        synchronized (mTasks) {
+            if (mTasks.get(task.mSource) == task) {
+                mTasks.remove(task.mSource);
+            }
+        }
+    }
+
+    private class Task implements Runnable {
+
+        private final HttpCacheProxy mProxy;
+        private final Uri mSource;
+        private final long mBytes;
+        private volatile boolean mCancelled;
+        private volatile HttpURLConnection mConnection;
+        private Future<?> mFuture;
+
+        Task(@NonNull HttpCacheProxy proxy, @NonNull Uri source, long bytes) {
+            mProxy = proxy;
+            mSource = source;
+            mBytes = bytes;
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+            HttpURLConnection connection = mConnection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            long read = 0;
+            InputStream in = null;
+            try {
+                // Ranges already on disk are served by the proxy without touching the network
+                URL url = new URL(mProxy.getProxyUrl(mSource.toString()));
+                mConnection = (HttpURLConnection) url.openConnection();
+                mConnection.setConnectTimeout(TIMEOUT);
+                mConnection.setReadTimeout(TIMEOUT);
+                mConnection.setRequestProperty("Range", "bytes=0-" + (mBytes - 1));
+                in = mConnection.getInputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while (!mCancelled && read < mBytes && (n = in.read(buffer)) != -1) {
+                    read += n;
+                }
+            } catch (IOException e) {
+                if (!mCancelled && EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "prefetch " + mSource + ": error", e);
+                }
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                if (mConnection != null) {
+                    mConnection.disconnect();
+                }
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "prefetch " + mSource + ": " + read + "/" + mBytes + (mCancelled ? " cancelled" : ""));
+                }
+                onTaskDone(this);
+            }
+        }
+    }
+}
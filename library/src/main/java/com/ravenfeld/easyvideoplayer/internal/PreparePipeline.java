@@ -0,0 +1,362 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+import com.ravenfeld.easyvideoplayer.PlaybackEngine;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the blocking part of a prepare (reset, descriptor opening, setDataSource and
+ * prepareAsync) on a dedicated background thread and posts the results back to the main thread.
+ * Every engine call that could race with a prepare in flight goes through the same
+ * single-threaded executor so they are applied in order. The HLS playlist downloads run on a
+ * thread of their own.
+ */
+class PreparePipeline {
+
+    private static final String TAG = "PreparePipeline";
+    private static final String ANDROID_ASSET = "file:///android_asset/";
+    private static final String ASSET = "asset://";
+
+    static final int SOURCE_HTTP = 0;
+    static final int SOURCE_ASSET = 1;
+    static final int SOURCE_LOCAL = 2;
+
+    interface Listener {
+
+        void onSourceResolved(int generation, boolean buffered);
+
+        void onPrepareDispatched(int generation, @NonNull PrepareTimings timings);
+
+        void onPrepareFailed(int generation, @NonNull Exception e);
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "EasyVideoPlayer-prepare");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Network reads of the prepares, kept off the prepare thread which orders the engine calls
+    private static final ExecutorService PLAYLIST_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "EasyVideoPlayer-playlist");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Context mContext;
+    private final Listener mListener;
+    private volatile int mGeneration;
+
+    PreparePipeline(@NonNull Context context, @NonNull Listener listener) {
+        mContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        mListener = listener;
+    }
+
+    static int resolveSourceType(@NonNull Uri source) {
+        String scheme = source.getScheme();
+        if (scheme != null && (scheme.equals("http") || scheme.equals("https"))) {
+            return SOURCE_HTTP;
+        } else if (scheme != null && scheme.equals("file") && source.getPath() != null && source.getPath().contains("/android_asset/")) {
+            return SOURCE_ASSET;
+        } else if (scheme != null && scheme.equals("asset")) {
+            return SOURCE_ASSET;
+        }
+        return SOURCE_LOCAL;
+    }
+
+    @Nullable
+    static String resolveAssetPath(@NonNull Uri source) {
+        String uri = source.toString();
+        if (uri.startsWith(ANDROID_ASSET)) {
+            return uri.replace(ANDROID_ASSET, "");
+        } else if (uri.startsWith(ASSET)) {
+            return uri.replace(ASSET, "");
+        }
+        return null;
+    }
+
+    /**
+     * Queues a prepare of {@code source} on the background thread. Any prepare queued before is
+     * invalidated, its results will not be delivered.
+     *
+     * @return the generation the listener callbacks will carry
+     */
+    int prepare(@NonNull final PlaybackEngine player, @Nullable final Surface surface, @NonNull final Uri source,
+                @NonNull final PrepareTimings timings) {
+        final int generation = ++mGeneration;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                timings.markStarted();
+                PlayerTrace.beginSection(PlayerTrace.PREPARE);
+                try {
+                    player.reset();
+                    player.setSurface(surface);
+
+                    long stageStart = SystemClock.elapsedRealtime();
+                    final int type = resolveSourceType(source);
+                    timings.markResolved(stageStart);
+                    post(generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            mListener.onSourceResolved(generation, type != SOURCE_HTTP);
+                        }
+                    });
+
+                    if (type == SOURCE_HTTP && EasyVideoPlayerConfig.isAdaptiveStreamingEnabled()
+                            && HlsPlaylist.isPlaylist(source)) {
+                        selectVariant(generation, player, source, timings);
+                    } else {
+                        dispatch(generation, player, source, type, source.toString(), timings);
+                    }
+                } catch (IllegalStateException | IllegalArgumentException | SecurityException e) {
+                    fail(generation, e);
+                } finally {
+                    PlayerTrace.endSection();
+                }
+            }
+        });
+        return generation;
+    }
+
+    /**
+     * Downloads the master playlist on the playlist thread, so that a slow origin does not hold
+     * the engine calls of the other players, then dispatches the chosen variant on the prepare
+     * thread.
+     */
+    private void selectVariant(final int generation, @NonNull final PlaybackEngine player, @NonNull final Uri source,
+                               @NonNull final PrepareTimings timings) {
+        PLAYLIST_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                final String url;
+                long stageStart = SystemClock.elapsedRealtime();
+                try {
+                    url = selectVariant(source.toString());
+                } catch (IOException | IllegalArgumentException e) {
+                    fail(generation, e);
+                    return;
+                }
+                timings.markOpened(stageStart);
+                EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        PlayerTrace.beginSection(PlayerTrace.PREPARE);
+                        try {
+                            dispatch(generation, player, source, SOURCE_HTTP, url, timings);
+                        } finally {
+                            PlayerTrace.endSection();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the data source and calls prepareAsync, on the prepare thread.
+     *
+     * @param url the source or, for an HLS master playlist, the variant chosen
+     */
+    private void dispatch(final int generation, @NonNull PlaybackEngine player, @NonNull Uri source, int type,
+                          @NonNull String url, @NonNull final PrepareTimings timings) {
+        try {
+            long stageStart;
+            if (type == SOURCE_ASSET) {
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "Loading assets URI: " + source);
+                }
+                stageStart = SystemClock.elapsedRealtime();
+                AssetFileDescriptor afd = mContext.getAssets().openFd(resolveAssetPath(source));
+                timings.markOpened(stageStart);
+                stageStart = SystemClock.elapsedRealtime();
+                try {
+                    player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+                } finally {
+                    afd.close();
+                }
+                timings.markDataSourceSet(stageStart);
+            } else if (type == SOURCE_HTTP) {
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "Loading web URI: " + url);
+                }
+                stageStart = SystemClock.elapsedRealtime();
+                HttpCacheProxy proxy = HttpCacheProxy.get();
+                if (proxy != null) {
+                    url = proxy.getProxyUrl(url);
+                }
+                player.setDataSource(url);
+                timings.markDataSourceSet(stageStart);
+            } else {
+                if (EasyVideoPlayerConfig.isDebug()) {
+                    Log.d(TAG, "Loading local URI: " + source);
+                }
+                stageStart = SystemClock.elapsedRealtime();
+                player.setDataSource(mContext, source);
+                timings.markDataSourceSet(stageStart);
+            }
+
+            if (generation != mGeneration) {
+                return;
+            }
+            stageStart = SystemClock.elapsedRealtime();
+            player.prepareAsync();
+            timings.markDispatched(stageStart);
+            post(generation, new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPrepareDispatched(generation, timings);
+                }
+            });
+        } catch (IOException | IllegalStateException | IllegalArgumentException | SecurityException e) {
+            fail(generation, e);
+        }
+    }
+
+    private void fail(final int generation, @NonNull final Exception e) {
+        post(generation, new Runnable() {
+            @Override
+            public void run() {
+                mListener.onPrepareFailed(generation, e);
+            }
+        });
+    }
+
+    /**
+     * Picks the variant of an HLS master playlist matching the estimated bandwidth. The player
+     * is given that variant alone so that it does not start on the highest bitrate, a new choice
+     * is made on every prepare. The download of the playlist is measured too, which seeds the
+     * {@link BandwidthMeter} on the first prepare. The master playlist is passed through while the
+     * meter has no sample, when the playlist was too small to be measured and nothing else was.
+     */
+    @NonNull
+    static String selectVariant(@NonNull String url) throws IOException {
+        HlsPlaylist playlist = HlsPlaylist.parse(url, HlsPlaylist.download(url));
+        if (BandwidthMeter.get().getSampleCount() == 0) {
+            return url;
+        }
+        long estimate = BandwidthMeter.get().getEstimate();
+        HlsPlaylist.Variant variant = playlist.select(estimate);
+        if (variant == null) {
+            return url;
+        }
+        if (EasyVideoPlayerConfig.isDebug()) {
+            Log.d(TAG, "HLS variant " + variant.mBandwidth + "bps " + variant.mWidth + "x" + variant.mHeight
+                    + " for " + estimate + "bps: " + variant.mUri);
+        }
+        return variant.mUri;
+    }
+
+    /**
+     * Drops the results of any prepare still queued or running.
+     */
+    void cancel() {
+        mGeneration++;
+    }
+
+    void reset(@NonNull final PlaybackEngine player) {
+        cancel();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    player.reset();
+                } catch (IllegalStateException e) {
+                    if (EasyVideoPlayerConfig.isDebug()) {
+                        Log.d(TAG, "reset: error", e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Releases {@code player} once any prepare queued before is done with it.
+     */
+    void release(@NonNull PlaybackEngine player) {
+        cancel();
+        releaseEngine(player);
+    }
+
+    /**
+     * Releases an engine no pipeline owns anymore, after the calls already queued for it.
+     */
+    static void releaseEngine(@NonNull final PlaybackEngine player) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    player.release();
+                } catch (RuntimeException e) {
+                    // A custom engine failing must not take the shared prepare thread down
+                    if (EasyVideoPlayerConfig.isDebug()) {
+                        Log.d(TAG, "release: error", e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs {@code runnable} on the background thread, after the engine calls already queued.
+     */
+    static void execute(@NonNull Runnable runnable) {
+        EXECUTOR.execute(runnable);
+    }
+
+    private void post(final int generation, final Runnable runnable) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+}
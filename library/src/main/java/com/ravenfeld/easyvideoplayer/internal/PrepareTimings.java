@@ -0,0 +1,100 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+public class PrepareTimings {
+
+    private final long mRequestedAt;
+    private long mQueueMs = -1;
+    private long mResolveMs = -1;
+    private long mOpenMs = -1;
+    private long mSetDataSourceMs = -1;
+    private long mPrepareAsyncMs = -1;
+    private volatile long mDispatchedAt;
+    private volatile long mPreparedAt;
+
+    PrepareTimings() {
+        mRequestedAt = SystemClock.elapsedRealtime();
+    }
+
+    void markStarted() {
+        mQueueMs = SystemClock.elapsedRealtime() - mRequestedAt;
+    }
+
+    void markResolved(long startedAt) {
+        mResolveMs = SystemClock.elapsedRealtime() - startedAt;
+    }
+
+    void markOpened(long startedAt) {
+        mOpenMs = SystemClock.elapsedRealtime() - startedAt;
+    }
+
+    void markDataSourceSet(long startedAt) {
+        mSetDataSourceMs = SystemClock.elapsedRealtime() - startedAt;
+    }
+
+    void markDispatched(long startedAt) {
+        mDispatchedAt = SystemClock.elapsedRealtime();
+        mPrepareAsyncMs = mDispatchedAt - startedAt;
+    }
+
+    void markPrepared() {
+        if (mPreparedAt == 0) {
+            mPreparedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Time spent waiting for the prepare executor, in milliseconds.
+     */
+    public long getQueueMs() {
+        return mQueueMs;
+    }
+
+    public long getResolveMs() {
+        return mResolveMs;
+    }
+
+    /**
+     * Time spent opening an asset descriptor, or -1 if the source has none.
+     */
+    public long getOpenMs() {
+        return mOpenMs;
+    }
+
+    public long getSetDataSourceMs() {
+        return mSetDataSourceMs;
+    }
+
+    public long getPrepareAsyncMs() {
+        return mPrepareAsyncMs;
+    }
+
+    /**
+     * Time between prepareAsync() returning and onPrepared(), or -1 while still preparing.
+     */
+    public long getPreparedMs() {
+        if (mPreparedAt == 0 || mDispatchedAt == 0) {
+            return -1;
+        }
+        return Math.max(0, mPreparedAt - mDispatchedAt);
+    }
+
+    public long getTotalMs() {
+        if (mPreparedAt == 0) {
+            return -1;
+        }
+        return mPreparedAt - mRequestedAt;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "queue=%dms resolve=%dms open=%dms setDataSource=%dms prepareAsync=%dms prepared=%dms total=%dms",
+                mQueueMs, mResolveMs, mOpenMs, mSetDataSourceMs, mPrepareAsyncMs, getPreparedMs(), getTotalMs());
+    }
+}
@@ -0,0 +1,7 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+
+public interface ProgressListener {
+
+    void onProgressUpdate(PlayerView player, int position, int duration);
+}
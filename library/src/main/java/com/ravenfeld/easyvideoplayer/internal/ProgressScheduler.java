@@ -0,0 +1,187 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives progress updates on the main thread while playing. Each wake up is aligned on a vsync
+ * and only happens when something is due: the controls, at the delay they ask for while they are
+ * visible, and each listener at its own interval. Nothing is scheduled otherwise.
+ */
+class ProgressScheduler implements Choreographer.FrameCallback {
+
+    interface Client {
+
+        /**
+         * Refreshes the visible controls.
+         *
+         * @return the delay in milliseconds until they need refreshing again
+         */
+        long onUiFrame();
+
+        void onListenersFrame(@NonNull List<ProgressListener> listeners);
+    }
+
+    private final Client mClient;
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final List<Subscription> mSubscriptions = new ArrayList<>();
+    private final List<ProgressListener> mDue = new ArrayList<>();
+    private boolean mRunning;
+    private boolean mPosted;
+    private boolean mUiActive;
+    private long mNextUiAt;
+    private long mStartedAt;
+    private long mRunningMs;
+    private long mWakeups;
+    private long mUiFrames;
+
+    ProgressScheduler(@NonNull Client client) {
+        mClient = client;
+    }
+
+    void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mStartedAt = SystemClock.uptimeMillis();
+        mNextUiAt = mStartedAt;
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            mSubscriptions.get(i).mNextAt = mStartedAt;
+        }
+        schedule();
+    }
+
+    void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mRunningMs += SystemClock.uptimeMillis() - mStartedAt;
+        cancel();
+    }
+
+    /**
+     * Whether the controls are on screen and should be refreshed.
+     */
+    void setUiActive(boolean active) {
+        if (mUiActive == active) {
+            return;
+        }
+        mUiActive = active;
+        mNextUiAt = SystemClock.uptimeMillis();
+        schedule();
+    }
+
+    /**
+     * Adds {@code listener} or changes its interval.
+     */
+    void add(@NonNull ProgressListener listener, long intervalMs) {
+        Subscription subscription = find(listener);
+        if (subscription == null) {
+            subscription = new Subscription(listener);
+            subscription.mNextAt = SystemClock.uptimeMillis();
+            mSubscriptions.add(subscription);
+        }
+        subscription.mIntervalMs = Math.max(1, intervalMs);
+        schedule();
+    }
+
+    void remove(@NonNull ProgressListener listener) {
+        Subscription subscription = find(listener);
+        if (subscription != null) {
+            mSubscriptions.remove(subscription);
+            schedule();
+        }
+    }
+
+    /**
+     * Main thread wake ups per second of playback.
+     */
+    float getWakeupsPerSecond() {
+        long runningMs = mRunningMs + (mRunning ? SystemClock.uptimeMillis() - mStartedAt : 0);
+        return runningMs == 0 ? 0f : mWakeups * 1000f / runningMs;
+    }
+
+    long getWakeups() {
+        return mWakeups;
+    }
+
+    long getUiFrames() {
+        return mUiFrames;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mPosted = false;
+        if (!mRunning) {
+            return;
+        }
+        mWakeups++;
+        long now = SystemClock.uptimeMillis();
+        if (mUiActive && now >= mNextUiAt) {
+            mUiFrames++;
+            mNextUiAt = now + mClient.onUiFrame();
+        }
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            Subscription subscription = mSubscriptions.get(i);
+            if (now >= subscription.mNextAt) {
+                subscription.mNextAt = now + subscription.mIntervalMs;
+                mDue.add(subscription.mListener);
+            }
+        }
+        if (!mDue.isEmpty()) {
+            mClient.onListenersFrame(mDue);
+            mDue.clear();
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        cancel();
+        if (!mRunning) {
+            return;
+        }
+        long next = mUiActive ? mNextUiAt : Long.MAX_VALUE;
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            next = Math.min(next, mSubscriptions.get(i).mNextAt);
+        }
+        if (next == Long.MAX_VALUE) {
+            return;
+        }
+        mChoreographer.postFrameCallbackDelayed(this, Math.max(0, next - SystemClock.uptimeMillis()));
+        mPosted = true;
+    }
+
+    private void cancel() {
+        if (mPosted) {
+            mChoreographer.removeFrameCallback(this);
+            mPosted = false;
+        }
+    }
+
+    private Subscription find(@NonNull ProgressListener listener) {
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            if (mSubscriptions.get(i).mListener == listener) {
+                return mSubscriptions.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static class Subscription {
+
+        private final ProgressListener mListener;
+        private long mIntervalMs;
+        private long mNextAt;
+
+        Subscription(@NonNull ProgressListener listener) {
+            mListener = listener;
+        }
+    }
+}
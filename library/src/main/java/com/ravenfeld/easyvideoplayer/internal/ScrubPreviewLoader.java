@@ -0,0 +1,217 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Extracts the preview frames shown while scrubbing with a MediaMetadataRetriever on a background
+ * thread. Positions are rounded to a time bucket so that a drag only decodes a bounded number of
+ * frames, kept in an LRU cache for the following drags. Only the latest requested bucket is
+ * decoded, the ones passed over while the thread was busy are skipped.
+ */
+class ScrubPreviewLoader {
+
+    private static final String TAG = "ScrubPreviewLoader";
+    private static final long MIN_BUCKET_MS = 1000;
+    private static final int MAX_BUCKETS = 100;
+    private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+
+    interface Listener {
+
+        void onScrubPreview(long positionMs, @NonNull Bitmap bitmap);
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "EasyVideoPlayer-scrub");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Context mContext;
+    private final Listener mListener;
+    private final int mWidth;
+    private final LruCache<Long, Bitmap> mCache;
+    private Uri mSource;
+    private volatile int mGeneration;
+    private volatile long mRequestedBucket = -1;
+    // Only touched on the executor
+    private MediaMetadataRetriever mRetriever;
+
+    ScrubPreviewLoader(@NonNull Context context, int width, @NonNull Listener listener) {
+        mContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        mWidth = width;
+        mListener = listener;
+        int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 32);
+        mCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * Delivers the frame of the bucket holding {@code positionMs} to the listener, at once if it is
+     * cached.
+     */
+    void request(@NonNull Uri source, long positionMs, long durationMs) {
+        if (!source.equals(mSource)) {
+            reset();
+            mSource = source;
+        }
+        long bucketMs = Math.max(MIN_BUCKET_MS, durationMs / MAX_BUCKETS);
+        final long bucket = positionMs / bucketMs * bucketMs;
+        Bitmap cached = mCache.get(bucket);
+        mRequestedBucket = bucket;
+        if (cached != null) {
+            mListener.onScrubPreview(bucket, cached);
+            return;
+        }
+        final Uri requestSource = source;
+        final int generation = mGeneration;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration || bucket != mRequestedBucket) {
+                    return;
+                }
+                final Bitmap bitmap = extract(requestSource, bucket);
+                if (bitmap == null) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        mCache.put(bucket, bitmap);
+                        if (bucket == mRequestedBucket) {
+                            mListener.onScrubPreview(bucket, bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops delivering frames until the next request.
+     */
+    void cancel() {
+        mRequestedBucket = -1;
+    }
+
+    int getCacheBytes() {
+        return mCache.size();
+    }
+
+    /**
+     * Drops the cached frames and closes the retriever.
+     */
+    void reset() {
+        mGeneration++;
+        mRequestedBucket = -1;
+        mSource = null;
+        mCache.evictAll();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeRetriever();
+            }
+        });
+    }
+
+    @Nullable
+    private Bitmap extract(@NonNull Uri source, long positionMs) {
+        try {
+            if (mRetriever == null) {
+                mRetriever = openRetriever(mContext, source);
+            }
+            Bitmap frame = mRetriever.getFrameAtTime(positionMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null || frame.getWidth() <= mWidth) {
+                return frame;
+            }
+            int height = Math.max(1, frame.getHeight() * mWidth / frame.getWidth());
+            Bitmap scaled = Bitmap.createScaledBitmap(frame, mWidth, height, true);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            return scaled;
+        } catch (IOException | RuntimeException e) {
+            if (EasyVideoPlayerConfig.isDebug()) {
+                Log.d(TAG, "extract " + positionMs + ": error", e);
+            }
+            closeRetriever();
+            return null;
+        }
+    }
+
+    @NonNull
+    static MediaMetadataRetriever openRetriever(@NonNull Context context, @NonNull Uri source) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            int type = PreparePipeline.resolveSourceType(source);
+            if (type == PreparePipeline.SOURCE_ASSET) {
+                AssetFileDescriptor afd = context.getAssets().openFd(PreparePipeline.resolveAssetPath(source));
+                try {
+                    retriever.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+                } finally {
+                    afd.close();
+                }
+            } else if (type == PreparePipeline.SOURCE_HTTP) {
+                String url = source.toString();
+                HttpCacheProxy proxy = HttpCacheProxy.get();
+                if (proxy != null) {
+                    url = proxy.getProxyUrl(url);
+                }
+                retriever.setDataSource(url, new HashMap<String, String>());
+            } else {
+                retriever.setDataSource(context, source);
+            }
+            return retriever;
+        } catch (IOException | RuntimeException e) {
+            retriever.release();
+            throw e;
+        }
+    }
+
+    private void closeRetriever() {
+        if (mRetriever != null) {
+            try {
+                mRetriever.release();
+            } catch (RuntimeException ignored) {
+            }
+            mRetriever = null;
+        }
+    }
+}
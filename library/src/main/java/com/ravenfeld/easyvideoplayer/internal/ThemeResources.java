@@ -0,0 +1,103 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.AttrRes;
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.content.res.AppCompatResources;
+
+import java.util.WeakHashMap;
+
+/**
+ * Colors and drawables resolved from a theme, shared by the players using that theme instead of
+ * being resolved again by each of them. Drawables are cached as their ConstantState, every caller
+ * gets its own instance sharing the loaded state. Entries go away with their theme, a
+ * configuration change brings a new one. Used on the main thread only.
+ */
+public class ThemeResources {
+
+    private static final WeakHashMap<Resources.Theme, Entry> ENTRIES = new WeakHashMap<>();
+    private static final SparseArray<ColorStateList> TINTS = new SparseArray<>();
+
+    private ThemeResources() {
+    }
+
+    @ColorInt
+    public static int resolveColor(@NonNull Context context, @AttrRes int attr) {
+        Entry entry = entry(context);
+        int index = entry.mColors.indexOfKey(attr);
+        if (index >= 0) {
+            return entry.mColors.valueAt(index);
+        }
+        int color = Util.resolveColor(context, attr);
+        entry.mColors.put(attr, color);
+        return color;
+    }
+
+    @Nullable
+    public static Drawable resolveDrawable(@NonNull Context context, @AttrRes int attr) {
+        Entry entry = entry(context);
+        Drawable.ConstantState state = entry.mAttrDrawables.get(attr);
+        if (state != null) {
+            return state.newDrawable(context.getResources());
+        }
+        Drawable drawable = Util.resolveDrawable(context, attr);
+        if (drawable != null && drawable.getConstantState() != null) {
+            entry.mAttrDrawables.put(attr, drawable.getConstantState());
+        }
+        return drawable;
+    }
+
+    @Nullable
+    public static Drawable getDrawable(@NonNull Context context, @DrawableRes int res) {
+        Entry entry = entry(context);
+        Drawable.ConstantState state = entry.mDrawables.get(res);
+        if (state != null) {
+            return state.newDrawable(context.getResources());
+        }
+        Drawable drawable = AppCompatResources.getDrawable(context, res);
+        if (drawable != null && drawable.getConstantState() != null) {
+            entry.mDrawables.put(res, drawable.getConstantState());
+        }
+        return drawable;
+    }
+
+    /**
+     * Single color tint, the same instance for a given color.
+     */
+    @NonNull
+    public static ColorStateList getTint(@ColorInt int color) {
+        ColorStateList tint = TINTS.get(color);
+        if (tint == null) {
+            tint = ColorStateList.valueOf(color);
+            TINTS.put(color, tint);
+        }
+        return tint;
+    }
+
+    @NonNull
+    private static Entry entry(@NonNull Context context) {
+        Resources.Theme theme = context.getTheme();
+        Entry entry = ENTRIES.get(theme);
+        if (entry == null) {
+            entry = new Entry();
+            ENTRIES.put(theme, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+
+        private final SparseIntArray mColors = new SparseIntArray();
+        private final SparseArray<Drawable.ConstantState> mAttrDrawables = new SparseArray<>();
+        private final SparseArray<Drawable.ConstantState> mDrawables = new SparseArray<>();
+    }
+}
@@ -2,37 +2,29 @@ package com.ravenfeld.easyvideoplayer.internal;
 
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 
 import androidx.annotation.AttrRes;
 
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
-
 
 public class Util {
 
     public static String getDurationString(long durationMs, boolean negativePrefix) {
-        return String.format(Locale.getDefault(), "%s%02d:%02d",
-                negativePrefix ? "-" : "",
-                TimeUnit.MILLISECONDS.toMinutes(durationMs),
-                TimeUnit.MILLISECONDS.toSeconds(durationMs) -
-                        TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(durationMs))
-        );
+        DurationFormatter formatter = new DurationFormatter();
+        formatter.format(durationMs, negativePrefix);
+        return formatter.toString();
     }
 
+    // Channels are extracted by hand rather than with android.graphics.Color, these run on every
+    // theme change and stay usable from plain JVM code
     public static boolean isColorDark(int color) {
-        double darkness = 1 - (0.299 * Color.red(color) + 0.587 * Color.green(color) + 0.114 * Color.blue(color)) / 255;
+        double darkness = 1 - (0.299 * ((color >> 16) & 0xff) + 0.587 * ((color >> 8) & 0xff) + 0.114 * (color & 0xff)) / 255;
         return darkness >= 0.5;
     }
 
     public static int adjustAlpha(int color, @SuppressWarnings("SameParameterValue") float factor) {
-        int alpha = Math.round(Color.alpha(color) * factor);
-        int red = Color.red(color);
-        int green = Color.green(color);
-        int blue = Color.blue(color);
-        return Color.argb(alpha, red, green, blue);
+        int alpha = Math.min(255, Math.max(0, Math.round((color >>> 24) * factor)));
+        return (alpha << 24) | (color & 0x00ffffff);
     }
 
     public static int resolveColor(Context context, @AttrRes int attr) {
@@ -0,0 +1,114 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+/**
+ * Size and placement of the video texture within the player for a given aspect ratio. Kept free
+ * of Android types and reused between measures, so that it can run on the JVM without
+ * allocating.
+ */
+class VideoLayout {
+
+    // Same value as ViewGroup.LayoutParams.MATCH_PARENT
+    static final int MATCH_PARENT = -1;
+
+    /**
+     * Layout width of the texture, in pixels or {@link #MATCH_PARENT}.
+     */
+    int mTextureWidth;
+    int mTextureHeight;
+    /**
+     * Whether the player wraps the video width, the controls then get the video width too.
+     */
+    boolean mWrapWidth;
+    boolean mWrapHeight;
+    int mVideoWidth;
+    float mScaleX;
+    float mScaleY;
+    int mOffsetX;
+    int mOffsetY;
+
+    private int mViewWidth = -1;
+    private int mViewHeight = -1;
+    private double mAspectRatio;
+    private int mScaleMode;
+
+    /**
+     * @param aspectRatio video height over width
+     * @param wrapWidth   the player is as wide as the video, rather than letterboxing it
+     * @param wrapHeight  the player is as high as the video, rather than letterboxing it
+     * @param scaleMode   one of the PlayerView SCALE_MODE constants, a wrapped dimension always
+     *                    fits the video except with SCALE_MODE_FIT_WIDTH
+     * @return false if the result is the same as last time
+     */
+    boolean compute(int viewWidth, int viewHeight, double aspectRatio, boolean wrapWidth, boolean wrapHeight,
+                    @PlayerView.ScaleMode int scaleMode) {
+        if (viewWidth == mViewWidth && viewHeight == mViewHeight && aspectRatio == mAspectRatio
+                && wrapWidth == mWrapWidth && wrapHeight == mWrapHeight && scaleMode == mScaleMode) {
+            return false;
+        }
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mAspectRatio = aspectRatio;
+        mWrapWidth = wrapWidth;
+        mWrapHeight = wrapHeight;
+        mScaleMode = scaleMode;
+
+        if ((wrapWidth || wrapHeight) && scaleMode != PlayerView.SCALE_MODE_FIT_WIDTH) {
+            scaleMode = PlayerView.SCALE_MODE_FIT;
+        }
+        int fitHeight = (int) (viewWidth * aspectRatio);
+        int newWidth;
+        int newHeight;
+        if (viewHeight == 0 || scaleMode == PlayerView.SCALE_MODE_FIT_WIDTH) {
+            newWidth = viewWidth;
+            newHeight = fitHeight;
+        } else if (scaleMode == PlayerView.SCALE_MODE_FILL) {
+            newWidth = viewWidth;
+            newHeight = viewHeight;
+        } else if (scaleMode == PlayerView.SCALE_MODE_CROP ? viewHeight < fitHeight : viewHeight > fitHeight) {
+            newWidth = viewWidth;
+            newHeight = fitHeight;
+        } else {
+            newWidth = (int) (viewHeight / aspectRatio);
+            newHeight = viewHeight;
+        }
+
+        int textureWidth;
+        int textureHeight;
+        int offsetX = 0;
+        int offsetY = 0;
+        int videoWidth = newWidth;
+        if (wrapWidth) {
+            textureWidth = newWidth;
+            newWidth = viewWidth;
+        } else {
+            textureWidth = MATCH_PARENT;
+            offsetX = (viewWidth - newWidth) / 2;
+        }
+
+        if (wrapHeight) {
+            textureHeight = newHeight;
+            newHeight = viewHeight;
+        } else {
+            textureHeight = MATCH_PARENT;
+            offsetY = (viewHeight - newHeight) / 2;
+        }
+
+        if (viewHeight == 0) {
+            viewHeight = 1;
+            newHeight = 1;
+        }
+        float scaleX = (float) newWidth / viewWidth;
+        float scaleY = (float) newHeight / viewHeight;
+
+        boolean changed = textureWidth != mTextureWidth || textureHeight != mTextureHeight || videoWidth != mVideoWidth
+                || scaleX != mScaleX || scaleY != mScaleY || offsetX != mOffsetX || offsetY != mOffsetY;
+        mTextureWidth = textureWidth;
+        mTextureHeight = textureHeight;
+        mVideoWidth = videoWidth;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mOffsetX = offsetX;
+        mOffsetY = offsetY;
+        return changed;
+    }
+}
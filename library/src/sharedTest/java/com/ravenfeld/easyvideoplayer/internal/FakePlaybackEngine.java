@@ -0,0 +1,335 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.net.Uri;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ravenfeld.easyvideoplayer.PlaybackEngine;
+
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic engine for the JVM tests and the device benchmarks. It follows the MediaPlayer state machine and throws on
+ * illegal calls, but nothing completes by itself: the test finishes the prepare, the seeks and the
+ * playback on the main thread with {@link #finishPrepare()}, {@link #completeSeek()} and
+ * {@link #complete()}.
+ */
+class FakePlaybackEngine implements PlaybackEngine {
+
+    static final int IDLE = 0;
+    static final int INITIALIZED = 1;
+    static final int PREPARING = 2;
+    static final int PREPARED = 3;
+    static final int STARTED = 4;
+    static final int PAUSED = 5;
+    static final int COMPLETED = 6;
+    static final int STOPPED = 7;
+    static final int RELEASED = 8;
+
+    /**
+     * Records the engines it creates, install it with
+     * {@link com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig#setPlaybackEngineFactory(PlaybackEngine.Factory)}.
+     */
+    static class Factory implements PlaybackEngine.Factory {
+
+        private final List<FakePlaybackEngine> mCreated = new ArrayList<>();
+
+        @NonNull
+        @Override
+        public synchronized PlaybackEngine create(@NonNull Context context) {
+            FakePlaybackEngine engine = new FakePlaybackEngine();
+            mCreated.add(engine);
+            return engine;
+        }
+
+        synchronized int getCreatedCount() {
+            return mCreated.size();
+        }
+
+        @NonNull
+        synchronized FakePlaybackEngine get(int index) {
+            return mCreated.get(index);
+        }
+
+        @NonNull
+        synchronized FakePlaybackEngine last() {
+            return mCreated.get(mCreated.size() - 1);
+        }
+    }
+
+    private volatile Listener mListener;
+    private int mState = IDLE;
+    private String mDataSource;
+    private Surface mSurface;
+    private int mDuration = 60000;
+    private int mVideoWidth = 1280;
+    private int mVideoHeight = 720;
+    private int mPosition;
+    private int mPendingSeek = -1;
+    private int mSeekCount;
+    private int mPrepareCount;
+    private int mPauseCount;
+    private int mResetCount;
+
+    @Override
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void setDataSource(@NonNull Context context, @NonNull Uri uri) {
+        setDataSource(uri.toString());
+    }
+
+    @Override
+    public synchronized void setDataSource(@NonNull String url) {
+        checkState("setDataSource", IDLE);
+        mDataSource = url;
+        mState = INITIALIZED;
+    }
+
+    @Override
+    public void setDataSource(@NonNull FileDescriptor fd, long offset, long length) {
+        setDataSource("fd:" + offset + "+" + length);
+    }
+
+    @Override
+    public synchronized void prepareAsync() {
+        checkState("prepareAsync", INITIALIZED, STOPPED);
+        mState = PREPARING;
+        mPrepareCount++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void setSurface(@Nullable Surface surface) {
+        checkNotReleased("setSurface");
+        mSurface = surface;
+    }
+
+    @Override
+    public synchronized void start() {
+        checkState("start", PREPARED, STARTED, PAUSED, COMPLETED);
+        if (mState == COMPLETED) {
+            mPosition = 0;
+        }
+        mState = STARTED;
+    }
+
+    @Override
+    public synchronized void pause() {
+        checkState("pause", STARTED, PAUSED, COMPLETED);
+        mPauseCount++;
+        if (mState == STARTED) {
+            mState = PAUSED;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        checkState("stop", PREPARED, STARTED, PAUSED, COMPLETED, STOPPED);
+        mState = STOPPED;
+    }
+
+    @Override
+    public synchronized void seekTo(int position) {
+        checkState("seekTo", PREPARED, STARTED, PAUSED, COMPLETED);
+        mPendingSeek = Math.max(0, Math.min(position, mDuration));
+        mSeekCount++;
+    }
+
+    @Override
+    public synchronized void reset() {
+        checkNotReleased("reset");
+        mState = IDLE;
+        mDataSource = null;
+        mPosition = 0;
+        mPendingSeek = -1;
+        mResetCount++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void release() {
+        mState = RELEASED;
+        mListener = null;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized boolean isPlaying() {
+        return mState == STARTED;
+    }
+
+    @Override
+    public synchronized int getCurrentPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public synchronized int getDuration() {
+        return mState == PREPARING || mState == IDLE || mState == INITIALIZED ? -1 : mDuration;
+    }
+
+    @Override
+    public synchronized int getVideoWidth() {
+        return mVideoWidth;
+    }
+
+    @Override
+    public synchronized int getVideoHeight() {
+        return mVideoHeight;
+    }
+
+    @Override
+    public void setVolume(float leftVolume, float rightVolume) {
+    }
+
+    synchronized void setDuration(int duration) {
+        mDuration = duration;
+    }
+
+    synchronized void setVideoSize(int width, int height) {
+        mVideoWidth = width;
+        mVideoHeight = height;
+    }
+
+    /**
+     * Waits for the prepare thread to call prepareAsync() or release().
+     */
+    synchronized void awaitPreparing(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        awaitState(PREPARING, timeout, unit);
+    }
+
+    synchronized void awaitState(int state, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState != state) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                throw new AssertionError("State " + mState + " instead of " + state);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+    }
+
+    /**
+     * Ends the prepare in flight, to be called on the main thread.
+     */
+    void finishPrepare() {
+        int width;
+        int height;
+        synchronized (this) {
+            checkState("finishPrepare", PREPARING);
+            mState = PREPARED;
+            width = mVideoWidth;
+            height = mVideoHeight;
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onVideoSizeChanged(this, width, height);
+            listener.onPrepared(this);
+        }
+    }
+
+    /**
+     * Completes the seek in flight, to be called on the main thread.
+     */
+    void completeSeek() {
+        synchronized (this) {
+            if (mPendingSeek < 0) {
+                throw new IllegalStateException("No seek in flight");
+            }
+            mPosition = mPendingSeek;
+            mPendingSeek = -1;
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onSeekComplete(this);
+        }
+    }
+
+    /**
+     * Plays up to the end of the media and reports the completion, to be called on the main
+     * thread.
+     */
+    void complete() {
+        synchronized (this) {
+            checkState("complete", STARTED);
+            mPosition = mDuration;
+            mState = COMPLETED;
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onCompletion(this);
+        }
+    }
+
+    void fail(int what, int extra) {
+        synchronized (this) {
+            mState = IDLE;
+        }
+        Listener listener = mListener;
+        if (listener != null && !listener.onError(this, what, extra)) {
+            listener.onCompletion(this);
+        }
+    }
+
+    synchronized void setPosition(int position) {
+        mPosition = position;
+    }
+
+    synchronized int getState() {
+        return mState;
+    }
+
+    @Nullable
+    synchronized String getDataSource() {
+        return mDataSource;
+    }
+
+    @Nullable
+    synchronized Surface getSurface() {
+        return mSurface;
+    }
+
+    synchronized boolean isSeeking() {
+        return mPendingSeek >= 0;
+    }
+
+    synchronized int getSeekCount() {
+        return mSeekCount;
+    }
+
+    synchronized int getPrepareCount() {
+        return mPrepareCount;
+    }
+
+    synchronized int getPauseCount() {
+        return mPauseCount;
+    }
+
+    synchronized int getResetCount() {
+        return mResetCount;
+    }
+
+    private void checkNotReleased(@NonNull String method) {
+        if (mState == RELEASED) {
+            throw new IllegalStateException(method + " called after release");
+        }
+    }
+
+    private void checkState(@NonNull String method, int... allowed) {
+        for (int state : allowed) {
+            if (mState == state) {
+                return;
+            }
+        }
+        throw new IllegalStateException(method + " called in state " + mState);
+    }
+}
@@ -0,0 +1,200 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays scrub traces against a fake player whose seeks complete some events later, as the
+ * native seeks do, and counts the seeks that reach it.
+ */
+public class CommandQueueTest {
+
+    private FakePlayer mPlayer;
+    private CommandQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mPlayer = new FakePlayer();
+        mQueue = new CommandQueue(mPlayer);
+    }
+
+    @Test
+    public void seekIsIssuedRightAwayWhenIdle() {
+        mQueue.seekTo(1000);
+
+        assertEquals(1, mPlayer.mNativeSeeks);
+        assertEquals(1000, mPlayer.mPosition);
+        assertTrue(mQueue.isBusy());
+        mPlayer.completeSeek(mQueue);
+        assertFalse(mQueue.isBusy());
+    }
+
+    @Test
+    public void dragCollapsesIntoOneSeekPerCompletion() {
+        // 200 progress events, the player completes a seek every 10 of them
+        int[] trace = drag(0, 60000, 200);
+        replay(trace, 10);
+        settle();
+
+        assertEquals(60000, mPlayer.mPosition);
+        assertEquals(mPlayer.mNativeSeeks, mQueue.getIssuedSeeks());
+        assertTrue("Issued " + mPlayer.mNativeSeeks, mPlayer.mNativeSeeks <= trace.length / 10 + 1);
+        assertEquals(trace.length, mQueue.getIssuedSeeks() + mQueue.getCoalescedSeeks());
+    }
+
+    @Test
+    public void backAndForthDragEndsOnTheReleasedPosition() {
+        int[] forward = drag(10000, 50000, 80);
+        int[] backward = drag(50000, 20000, 80);
+        replay(forward, 7);
+        replay(backward, 7);
+        settle();
+
+        assertEquals(20000, mPlayer.mPosition);
+        assertTrue(mPlayer.mNativeSeeks < forward.length + backward.length);
+    }
+
+    @Test
+    public void scrubPausesThenResumesAfterTheLastSeek() {
+        mQueue.start();
+        assertTrue(mPlayer.mPlaying);
+
+        // onStartTrackingTouch, the drag, then onStopTrackingTouch while the last seek is in flight
+        mQueue.pause();
+        replay(drag(0, 30000, 50), 5);
+        mQueue.seekTo(30000);
+        mQueue.start();
+        assertFalse(mPlayer.mPlaying);
+        settle();
+
+        assertTrue(mPlayer.mPlaying);
+        assertEquals(30000, mPlayer.mPosition);
+        // The player only resumed once it was at the released position
+        assertEquals("seek start", mPlayer.lastCommands(2));
+        assertEquals(1, mPlayer.count("start", 1));
+    }
+
+    @Test
+    public void scrubPauseIsNotOvertakenByAQueuedStart() {
+        // A start waiting behind a seek when the user grabs the seek bar
+        mQueue.seekTo(5000);
+        mQueue.start();
+        mQueue.pause();
+        replay(drag(5000, 8000, 20), 4);
+        settle();
+
+        assertFalse(mPlayer.mPlaying);
+        assertEquals(8000, mPlayer.mPosition);
+    }
+
+    @Test
+    public void clearDropsThePendingCommands() {
+        mQueue.seekTo(1000);
+        mQueue.seekTo(2000);
+        mQueue.start();
+        mQueue.clear();
+
+        assertFalse(mQueue.isBusy());
+        assertEquals(1, mPlayer.mNativeSeeks);
+        assertFalse(mPlayer.mPlaying);
+    }
+
+    /**
+     * Feeds the positions of {@code trace} as seek requests, completing the seek in flight every
+     * {@code eventsPerSeek} events.
+     */
+    private void replay(int[] trace, int eventsPerSeek) {
+        for (int i = 0; i < trace.length; i++) {
+            mQueue.seekTo(trace[i]);
+            if ((i + 1) % eventsPerSeek == 0) {
+                mPlayer.completeSeek(mQueue);
+            }
+        }
+    }
+
+    private void settle() {
+        int guard = 0;
+        while (mPlayer.mSeekInFlight) {
+            mPlayer.completeSeek(mQueue);
+            if (++guard > 1000) {
+                throw new AssertionError("The queue does not settle");
+            }
+        }
+        assertFalse(mQueue.isBusy());
+    }
+
+    private static int[] drag(int from, int to, int events) {
+        int[] trace = new int[events];
+        for (int i = 0; i < events; i++) {
+            trace[i] = from + (int) ((long) (to - from) * (i + 1) / events);
+        }
+        return trace;
+    }
+
+    private static class FakePlayer implements CommandQueue.Target {
+
+        private final List<String> mCommands = new ArrayList<>();
+        private int mPosition;
+        private boolean mPlaying;
+        private boolean mSeekInFlight;
+        private int mNativeSeeks;
+
+        @Override
+        public void onSeek(int position) {
+            if (mSeekInFlight) {
+                throw new AssertionError("A seek was issued while another one is in flight");
+            }
+            mSeekInFlight = true;
+            mNativeSeeks++;
+            mPosition = position;
+            mCommands.add("seek");
+        }
+
+        @Override
+        public void onStart() {
+            mPlaying = true;
+            mCommands.add("start");
+        }
+
+        @Override
+        public void onPause() {
+            mPlaying = false;
+            mCommands.add("pause");
+        }
+
+        void completeSeek(CommandQueue queue) {
+            if (mSeekInFlight) {
+                mSeekInFlight = false;
+                queue.onSeekComplete();
+            }
+        }
+
+        int count(String command, int from) {
+            int count = 0;
+            for (String issued : mCommands.subList(from, mCommands.size())) {
+                if (issued.equals(command)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        String lastCommands(int count) {
+            StringBuilder out = new StringBuilder();
+            for (String command : mCommands.subList(mCommands.size() - count, mCommands.size())) {
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(command);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The framework-free code run by the controls: theme colors, video layout and the seeks of a
+ * scrub. Run with the gc profiler, as the jmh task does, for the allocations per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlsBenchmark {
+
+    // A seek completes every few progress events of a drag
+    private static final int EVENTS_PER_SEEK = 8;
+
+    private final VideoLayout mLayout = new VideoLayout();
+    private final CommandQueue mQueue = new CommandQueue(new CommandQueue.Target() {
+        @Override
+        public void onSeek(int position) {
+            mSeekInFlight = true;
+        }
+
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void onPause() {
+        }
+    });
+    private boolean mSeekInFlight;
+    private int mColor = 0xff3f51b5;
+    private int mWidth = 1080;
+    private int mEvent;
+
+    /**
+     * One-off label formatting, the allocating path kept for the public API.
+     */
+    @Benchmark
+    public String durationString() {
+        mEvent += 1000;
+        return Util.getDurationString(mEvent, false);
+    }
+
+    @Benchmark
+    public boolean isColorDark() {
+        mColor += 0x010101;
+        return Util.isColorDark(mColor);
+    }
+
+    @Benchmark
+    public int adjustAlpha() {
+        mColor += 0x010101;
+        return Util.adjustAlpha(mColor, .85f);
+    }
+
+    /**
+     * A measure pass with a new size, as on a rotation or a resize animation.
+     */
+    @Benchmark
+    public boolean layoutResized() {
+        mWidth = mWidth == 1080 ? 1920 : 1080;
+        return mLayout.compute(mWidth, 1080, 9 / 16d, false, true, PlayerView.SCALE_MODE_FIT);
+    }
+
+    /**
+     * A measure pass with nothing changed, the common case.
+     */
+    @Benchmark
+    public boolean layoutUnchanged() {
+        return mLayout.compute(1080, 1920, 9 / 16d, false, true, PlayerView.SCALE_MODE_FIT);
+    }
+
+    /**
+     * One progress event of a drag on the seek bar.
+     */
+    @Benchmark
+    public boolean scrubEvent() {
+        mEvent++;
+        mQueue.seekTo(mEvent & 0xfffff);
+        if (mEvent % EVENTS_PER_SEEK == 0 && mSeekInFlight) {
+            mSeekInFlight = false;
+            mQueue.onSeekComplete();
+        }
+        return mSeekInFlight;
+    }
+}
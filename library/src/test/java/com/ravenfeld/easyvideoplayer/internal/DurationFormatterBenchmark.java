@@ -0,0 +1,49 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting done by the progress ticks. Run with the gc profiler, as the jmh task does, its
+ * gc.alloc.rate.norm must stay at 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationFormatterBenchmark {
+
+    private static final long TICK_MS = 50;
+
+    private final DurationFormatter mFormatter = new DurationFormatter();
+    private long mPosition;
+
+    /**
+     * Position label of a playing video, the text changes once every 20 ticks.
+     */
+    @Benchmark
+    public boolean tick() {
+        mPosition += TICK_MS;
+        return mFormatter.format(mPosition, false);
+    }
+
+    /**
+     * Worst case, a new second with hours and a sign on every call.
+     */
+    @Benchmark
+    public boolean newSecond() {
+        mPosition += 1000;
+        return mFormatter.format(10 * 3600 * 1000 + mPosition, true);
+    }
+}
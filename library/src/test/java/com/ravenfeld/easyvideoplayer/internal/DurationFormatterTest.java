@@ -0,0 +1,70 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DurationFormatterTest {
+
+    @Test
+    public void formatsMinutesAndSeconds() {
+        assertEquals("00:00", format(0, false));
+        assertEquals("00:59", format(59999, false));
+        assertEquals("01:00", format(60000, false));
+        assertEquals("59:59", format(3599000, false));
+        assertEquals("00:00", format(-5000, false));
+    }
+
+    @Test
+    public void formatsHoursAndSign() {
+        assertEquals("1:00:00", format(3600000, false));
+        assertEquals("-1:02:03", format(3723000, true));
+        assertEquals("123:00:00", format(123 * 3600000L, false));
+    }
+
+    @Test
+    public void sameSecondIsNotFormattedAgain() {
+        DurationFormatter formatter = new DurationFormatter();
+        assertTrue(formatter.format(1000, false));
+        assertFalse(formatter.format(1999, false));
+        assertTrue(formatter.format(1999, true));
+        assertTrue(formatter.format(2000, true));
+    }
+
+    @Test
+    public void formatDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        DurationFormatter formatter = new DurationFormatter();
+        long position = formatTicks(formatter, 0);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        formatTicks(formatter, position);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // Leaves room for the measuring call itself, not for one object per format
+        assertTrue(allocated + " bytes allocated", allocated < 1024);
+    }
+
+    private static long formatTicks(DurationFormatter formatter, long position) {
+        for (int i = 0; i < 100000; i++) {
+            position += 50;
+            formatter.format(position, i % 2 == 0);
+        }
+        return position;
+    }
+
+    private static String format(long durationMs, boolean negativePrefix) {
+        DurationFormatter formatter = new DurationFormatter();
+        formatter.format(durationMs, negativePrefix);
+        return formatter.toString();
+    }
+}
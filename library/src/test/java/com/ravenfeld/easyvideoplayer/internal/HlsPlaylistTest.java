@@ -0,0 +1,130 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Parses and rewrites the playlists of src/test/resources/hls served by a local origin.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HlsPlaylistTest {
+
+    private TestHttpServer mOrigin;
+
+    @Before
+    public void setUp() throws IOException {
+        mOrigin = new TestHttpServer();
+        mOrigin.setResource("/hls/master.m3u8", "/hls/master.m3u8");
+        mOrigin.setResource("/hls/mid/index.m3u8", "/hls/media.m3u8");
+    }
+
+    @After
+    public void tearDown() {
+        mOrigin.stop();
+    }
+
+    @Test
+    public void masterVariantsAreResolvedAgainstThePlaylist() throws IOException {
+        HlsPlaylist playlist = load("/hls/master.m3u8");
+
+        assertTrue(playlist.isMaster());
+        assertEquals(3, playlist.mVariants.size());
+        HlsPlaylist.Variant mid = playlist.mVariants.get(1);
+        assertEquals(5000000, mid.mBandwidth);
+        assertEquals(1280, mid.mWidth);
+        assertEquals(720, mid.mHeight);
+        assertEquals(mOrigin.url("/hls/mid/index.m3u8"), mid.mUri);
+    }
+
+    @Test
+    public void mediaSegmentsAreResolvedAgainstThePlaylist() throws IOException {
+        HlsPlaylist playlist = load("/hls/mid/index.m3u8");
+
+        assertFalse(playlist.isMaster());
+        assertTrue(playlist.mEndList);
+        assertEquals(Arrays.asList(mOrigin.url("/hls/mid/segment0.ts"), mOrigin.url("/hls/mid/segment1.ts"),
+                mOrigin.url("/hls/mid/segment2.ts")), playlist.mSegments);
+    }
+
+    @Test
+    public void selectPicksTheHighestVariantFittingTheEstimate() throws IOException {
+        HlsPlaylist playlist = load("/hls/master.m3u8");
+
+        // A quarter of the estimate is kept as a margin
+        assertEquals(5000000, selected(playlist, 8000000));
+        assertEquals(5000000, selected(playlist, 15000000));
+        assertEquals(12000000, selected(playlist, 16000000));
+        assertEquals(800000, selected(playlist, 2000000));
+    }
+
+    @Test
+    public void selectFallsBackToTheLowestVariant() throws IOException {
+        assertEquals(800000, selected(load("/hls/master.m3u8"), 100000));
+    }
+
+    @Test
+    public void rewriteMapsTheSegmentsAndMakesTheKeysAbsolute() throws IOException {
+        String url = mOrigin.url("/hls/mid/index.m3u8");
+        String text = HlsPlaylist.rewrite(url, HlsPlaylist.download(url), new HlsPlaylist.UriMapper() {
+            @NonNull
+            @Override
+            public String map(@NonNull String uri) {
+                return "http://proxy/" + uri;
+            }
+        });
+
+        assertTrue(text, text.contains("URI=\"" + mOrigin.url("/hls/key.bin") + "\""));
+        assertTrue(text, text.contains("\nhttp://proxy/" + mOrigin.url("/hls/mid/segment0.ts") + "\n"));
+        assertTrue(text, text.contains("\nhttp://proxy/" + mOrigin.url("/hls/mid/segment2.ts") + "\n"));
+        // Same shape once rewritten
+        HlsPlaylist rewritten = HlsPlaylist.parse(url, text);
+        assertEquals(3, rewritten.mSegments.size());
+        assertTrue(rewritten.mEndList);
+    }
+
+    @Test
+    public void downloadFailsOnAnErrorStatus() {
+        try {
+            HlsPlaylist.download(mOrigin.url("/hls/missing.m3u8"));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void parseRejectsWhatIsNotAPlaylist() {
+        try {
+            HlsPlaylist.parse(mOrigin.url("/hls/master.m3u8"), "<html></html>");
+            fail();
+        } catch (IOException expected) {
+            // Reported to the player as a prepare failure
+        }
+    }
+
+    @NonNull
+    private HlsPlaylist load(@NonNull String path) throws IOException {
+        String url = mOrigin.url(path);
+        return HlsPlaylist.parse(url, HlsPlaylist.download(url));
+    }
+
+    private static long selected(@NonNull HlsPlaylist playlist, long estimate) {
+        HlsPlaylist.Variant variant = playlist.select(estimate);
+        assertNotNull(variant);
+        return variant.mBandwidth;
+    }
+}
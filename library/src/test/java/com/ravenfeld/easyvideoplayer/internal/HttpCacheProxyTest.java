@@ -0,0 +1,208 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HttpCacheProxyTest {
+
+    private static final int MEDIA_SIZE = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private TestHttpServer mOrigin;
+    private byte[] mMedia;
+
+    @Before
+    public void setUp() throws IOException {
+        mMedia = new byte[MEDIA_SIZE];
+        new Random(1).nextBytes(mMedia);
+        mOrigin = new TestHttpServer();
+        mOrigin.setBody("/video.mp4", mMedia);
+        HttpCacheProxy.install(mFolder.newFolder(), 4 * MEDIA_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        HttpCacheProxy.uninstall();
+        mOrigin.stop();
+    }
+
+    @Test
+    public void replayIsServedFromDisk() throws Exception {
+        String url = proxy().getProxyUrl(mOrigin.url("/video.mp4"));
+        assertArrayEquals(mMedia, get(url, null, 200));
+        int requests = mOrigin.getRequestCount();
+
+        assertArrayEquals(mMedia, get(url, null, 200));
+        assertEquals(requests, mOrigin.getRequestCount());
+        awaitHitBytes(MEDIA_SIZE);
+        assertEquals(MEDIA_SIZE, proxy().getStats().getMissBytes());
+    }
+
+    @Test
+    public void rangeIsStitchedFromDiskAndOrigin() throws Exception {
+        String url = proxy().getProxyUrl(mOrigin.url("/video.mp4"));
+        assertArrayEquals(Arrays.copyOfRange(mMedia, 1000, 2000), get(url, "bytes=1000-1999", 206));
+
+        byte[] head = get(url, "bytes=0-4999", 206);
+        assertArrayEquals(Arrays.copyOfRange(mMedia, 0, 5000), head);
+        // Only the missing ranges around the cached one were fetched, 1000 bytes the first time
+        assertEquals(5000, proxy().getStats().getMissBytes());
+        awaitHitBytes(1000);
+    }
+
+    @Test
+    public void cacheStaysUnderItsCap() throws Exception {
+        HttpCacheProxy.install(mFolder.newFolder(), MEDIA_SIZE + MEDIA_SIZE / 2);
+        mOrigin.setBody("/other.mp4", mMedia);
+
+        get(proxy().getProxyUrl(mOrigin.url("/video.mp4")), null, 200);
+        get(proxy().getProxyUrl(mOrigin.url("/other.mp4")), null, 200);
+        // The first entry is evicted once the connection of the second one is done with it
+        long deadline = System.currentTimeMillis() + 5000;
+        while (proxy().getStats().getEvictionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, proxy().getStats().getEvictionCount());
+        assertTrue(proxy().getStats().getSizeBytes() <= proxy().getStats().getMaxBytes());
+    }
+
+    @Test
+    public void requestWithoutTokenIsRejected() throws Exception {
+        URL proxyUrl = new URL(proxy().getProxyUrl(mOrigin.url("/video.mp4")));
+        String url = "http://127.0.0.1:" + proxyUrl.getPort() + "/" + URLEncoder.encode(mOrigin.url("/video.mp4"), "UTF-8");
+
+        get(url, null, 403);
+        assertEquals(0, mOrigin.getRequestCount());
+    }
+
+    @Test
+    public void nonHttpSourceIsRejected() throws Exception {
+        get(proxy().getProxyUrl("file:///etc/hosts"), null, 403);
+        get(proxy().getProxyUrl("content://media/external/video/1"), null, 403);
+    }
+
+    @Test
+    public void malformedRequestsDoNotStopTheProxy() throws Exception {
+        URL proxyUrl = new URL(proxy().getProxyUrl(mOrigin.url("/video.mp4")));
+        String token = proxyUrl.getPath().split("/")[1];
+
+        assertEquals("HTTP/1.1 403 Forbidden", statusLine(proxyUrl.getPort(), "GET /" + token + "/%zz HTTP/1.1\r\n\r\n"));
+        assertEquals("HTTP/1.1 400 Bad Request", statusLine(proxyUrl.getPort(), "GET " + proxyUrl.getPath()
+                + " HTTP/1.1\r\nRange: bytes=99999999999999999999-\r\n\r\n"));
+        assertEquals("HTTP/1.1 400 Bad Request", statusLine(proxyUrl.getPort(), "GET " + proxyUrl.getPath()
+                + " HTTP/1.1\r\nRange: bytes=20-10\r\n\r\n"));
+
+        assertArrayEquals(mMedia, get(proxyUrl.toString(), null, 200));
+    }
+
+    @Test
+    public void oversizedOrLateHeadersAreDropped() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String request = "GET /token/url HTTP/1.1\r\nRange: bytes=0-\r\n\r\n";
+        assertNotNull(HttpCacheProxy.Request.read(stream(request), deadline));
+
+        StringBuilder large = new StringBuilder("GET /token/url HTTP/1.1\r\n");
+        while (large.length() < 8 * 1024) {
+            large.append("X-Padding: 0123456789abcdef\r\n");
+        }
+        assertNull(HttpCacheProxy.Request.read(stream(large.append("\r\n").toString()), deadline));
+        // A client trickling its request is cut once the deadline passed
+        assertNull(HttpCacheProxy.Request.read(stream(request), System.nanoTime() - 1));
+    }
+
+    @NonNull
+    private static InputStream stream(@NonNull String request) throws IOException {
+        return new ByteArrayInputStream(request.getBytes("ISO-8859-1"));
+    }
+
+    @NonNull
+    private static HttpCacheProxy proxy() {
+        HttpCacheProxy proxy = HttpCacheProxy.get();
+        if (proxy == null) {
+            throw new AssertionError("The proxy is not installed");
+        }
+        return proxy;
+    }
+
+    private static void awaitHitBytes(long bytes) throws InterruptedException {
+        // The stats are updated once the bytes are written, the client may be done before that
+        long deadline = System.currentTimeMillis() + 5000;
+        while (proxy().getStats().getHitBytes() < bytes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(bytes, proxy().getStats().getHitBytes());
+    }
+
+    @NonNull
+    private static byte[] get(@NonNull String url, @Nullable String range, int expectedCode) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            if (range != null) {
+                connection.setRequestProperty("Range", range);
+            }
+            assertEquals(expectedCode, connection.getResponseCode());
+            if (expectedCode >= 400) {
+                return new byte[0];
+            }
+            return readFully(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @NonNull
+    private static String statusLine(int port, @NonNull String request) throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes("ISO-8859-1"));
+            out.flush();
+            String response = new String(readFully(socket.getInputStream()), "ISO-8859-1");
+            return response.substring(0, response.indexOf("\r\n"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class MediaPlayerPoolTest {
+
+    @Test
+    public void releasedEngineReturnsItsPlayer() {
+        int inUse = stats().getInUse();
+        MediaPlayerEngine engine = new MediaPlayerEngine();
+        assertEquals(inUse + 1, stats().getInUse());
+
+        engine.release();
+        assertEquals(inUse, stats().getInUse());
+    }
+
+    @Test
+    public void engineDroppedWithoutReleaseIsReclaimed() throws InterruptedException {
+        MediaPlayerPoolStats before = stats();
+        createEngine();
+
+        awaitInUse(before.getInUse());
+        assertEquals(before.getLeaked() + 1, stats().getLeaked());
+    }
+
+    @Test
+    public void noPlayerOutlivesItsView() throws InterruptedException {
+        Context context = ApplicationProvider.getApplicationContext();
+        int inUse = stats().getInUse();
+        PlayerView view = new PlayerView(context);
+        assertEquals(inUse + 1, stats().getInUse());
+
+        // Released on the prepare thread
+        view.release();
+        awaitInUse(inUse);
+
+        MediaPlayerPoolStats before = stats();
+        createView(context);
+        awaitInUse(inUse);
+        assertEquals(before.getLeaked() + 1, stats().getLeaked());
+    }
+
+    @Test
+    public void reinitializedViewReleasesItsPreviousPlayer() throws InterruptedException {
+        int inUse = stats().getInUse();
+        PlayerView view = new PlayerView(ApplicationProvider.<Context>getApplicationContext());
+        view.initPlayer();
+        view.initPlayer();
+
+        awaitInUse(inUse + 1);
+        view.release();
+        awaitInUse(inUse);
+    }
+
+    private static void createEngine() {
+        new MediaPlayerEngine();
+    }
+
+    private static void createView(@NonNull Context context) {
+        new PlayerView(context);
+    }
+
+    @NonNull
+    private static MediaPlayerPoolStats stats() {
+        return MediaPlayerPool.get().getStats();
+    }
+
+    private static void awaitInUse(int inUse) throws InterruptedException {
+        // A dropped owner is only noticed once the collector has enqueued its reference, and a
+        // released player once the prepare thread has recycled it
+        for (int i = 0; i < 100 && stats().getInUse() != inUse; i++) {
+            Runtime.getRuntime().gc();
+            Thread.sleep(20);
+        }
+        assertEquals(inUse, stats().getInUse());
+    }
+}
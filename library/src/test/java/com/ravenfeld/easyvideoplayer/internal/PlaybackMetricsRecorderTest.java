@@ -0,0 +1,191 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import com.ravenfeld.easyvideoplayer.PlaybackMetricsAggregator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives the recorder with a fake clock and checks the totals kept by the aggregator.
+ */
+public class PlaybackMetricsRecorderTest {
+
+    private static final float DELTA = 0.01f;
+
+    private FakeClock mClock;
+    private PlaybackMetricsRecorder mRecorder;
+    private PlaybackMetricsAggregator mAggregator;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        // The recorder only hands the player over to the listeners
+        mRecorder = new PlaybackMetricsRecorder(null, mClock);
+        mAggregator = new PlaybackMetricsAggregator();
+        PlaybackMetricsRecorder.addListener(mAggregator);
+    }
+
+    @After
+    public void tearDown() {
+        PlaybackMetricsRecorder.removeListener(mAggregator);
+    }
+
+    @Test
+    public void startupIsMeasuredUpToTheFirstFrameOnly() {
+        mRecorder.onSourceSet();
+        mClock.advance(850);
+        mRecorder.onFrameRendered(null);
+        mClock.advance(16);
+        mRecorder.onFrameRendered(null);
+
+        assertEquals(1, mAggregator.getStartupCount());
+        assertEquals(850, mAggregator.getAverageStartupMs());
+        assertEquals(-1, mAggregator.getAveragePrepareMs());
+    }
+
+    @Test
+    public void prepareAfterAnErrorRestartsTheStartupClock() {
+        mRecorder.onSourceSet();
+        mClock.advance(300);
+        mRecorder.onFrameRendered(null);
+        mClock.advance(5000);
+        mRecorder.onPrepareRequested();
+        mClock.advance(500);
+        mRecorder.onFrameRendered(null);
+
+        assertEquals(2, mAggregator.getStartupCount());
+        assertEquals(400, mAggregator.getAverageStartupMs());
+        assertEquals(500, mAggregator.getMaxStartupMs());
+    }
+
+    @Test
+    public void rebufferRatioIsTakenOverThePlayingTime() {
+        mRecorder.onPlaying(true);
+        mClock.advance(1000);
+        mRecorder.onRebufferStart();
+        mRecorder.onRebufferStart();
+        mClock.advance(250);
+        mRecorder.onRebufferEnd();
+        mRecorder.onRebufferEnd();
+        mClock.advance(750);
+        mRecorder.onPlaying(false);
+
+        assertEquals(1, mAggregator.getRebufferCount());
+        assertEquals(250, mAggregator.getRebufferMs());
+        assertEquals(2000, mAggregator.getPlayedMs());
+        assertEquals(0.125f, mAggregator.getRebufferRatio(), DELTA);
+    }
+
+    @Test
+    public void seekLatencyRunsFromTheFirstRequestOfASeries() {
+        mRecorder.onSeekRequested();
+        mClock.advance(100);
+        mRecorder.onSeekRequested();
+        mClock.advance(300);
+        mRecorder.onSeekComplete();
+        mRecorder.onSeekComplete();
+
+        assertEquals(1, mAggregator.getSeekCount());
+        assertEquals(400, mAggregator.getMaxSeekMs());
+    }
+
+    @Test
+    public void frameRateIsReportedOncePerWindow() {
+        mRecorder.onSourceSet();
+        mRecorder.onPlaying(true);
+        // The first frame opens the window, 30 more over the next second
+        mRecorder.onFrameRendered(null);
+        for (int i = 0; i < 30; i++) {
+            mClock.advance(34);
+            mRecorder.onFrameRendered(null);
+        }
+
+        assertEquals(29.41f, mAggregator.getAverageFrameRate(), DELTA);
+        assertEquals(29.41f, mAggregator.getMinFrameRate(), DELTA);
+    }
+
+    @Test
+    public void cpuTimeIsSplitBetweenVideoAndAudioOnly() {
+        mRecorder.onPlaying(true);
+        mClock.advance(1000, 200);
+        mRecorder.onVideoRendered(false);
+        mClock.advance(2000, 100);
+        mRecorder.onPlaying(false);
+
+        assertEquals(200f, mAggregator.getVideoCpuMsPerSecond(), DELTA);
+        assertEquals(50f, mAggregator.getAudioOnlyCpuMsPerSecond(), DELTA);
+        assertEquals(3000, mAggregator.getPlayedMs());
+    }
+
+    @Test
+    public void nothingIsMeasuredWithoutListener() {
+        PlaybackMetricsRecorder.removeListener(mAggregator);
+        mRecorder.onPlaying(true);
+        mRecorder.onVideoRendered(false);
+        mClock.advance(1000, 100);
+        mRecorder.onPlaying(false);
+
+        assertEquals(0, mClock.mCpuReads);
+    }
+
+    @Test
+    public void resetReportsThePlaybackInProgress() {
+        mRecorder.onPlaying(true);
+        mClock.advance(600);
+        mRecorder.onRebufferStart();
+        mClock.advance(400);
+        mRecorder.onSeekRequested();
+        mRecorder.reset();
+        mRecorder.onSeekComplete();
+
+        assertEquals(1000, mAggregator.getPlayedMs());
+        assertEquals(400, mAggregator.getRebufferMs());
+        assertEquals(0, mAggregator.getSeekCount());
+    }
+
+    @Test
+    public void aggregatorResetClearsTheTotals() {
+        mRecorder.onSourceSet();
+        mClock.advance(100);
+        mRecorder.onFrameRendered(null);
+        mRecorder.onTransition(40, true);
+        PlaybackMetricsRecorder.onMemoryTrimmed(80, 2, 4096);
+        mAggregator.reset();
+
+        assertEquals(0, mAggregator.getStartupCount());
+        assertEquals(-1, mAggregator.getAverageStartupMs());
+        assertEquals(0, mAggregator.getTransitionCount());
+        assertEquals(0, mAggregator.getTrimmedBytes());
+    }
+
+    private static class FakeClock implements PlaybackMetricsRecorder.Clock {
+
+        // The recorder uses 0 as "not started"
+        private long mNow = 10000;
+        private long mCpu = 500;
+        private int mCpuReads;
+
+        void advance(long ms) {
+            advance(ms, 0);
+        }
+
+        void advance(long ms, long cpuMs) {
+            mNow += ms;
+            mCpu += cpuMs;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return mNow;
+        }
+
+        @Override
+        public long elapsedCpuTime() {
+            mCpuReads++;
+            return mCpu;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoCallback;
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Plays through a PlayerView with a {@link FakePlaybackEngine}, the test deciding when the
+ * prepare, the seeks and the playback complete.
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PlayerViewTest {
+
+    private static final Uri SOURCE = Uri.parse("file:///sdcard/Movies/clip.mp4");
+    private static final long TIMEOUT_MS = 5000;
+
+    private FakePlaybackEngine.Factory mFactory;
+    private RecordingCallback mCallback;
+    private PlayerView mView;
+
+    @Before
+    public void setUp() {
+        mFactory = new FakePlaybackEngine.Factory();
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(mFactory);
+        mCallback = new RecordingCallback();
+        mView = new PlayerView(ApplicationProvider.<Context>getApplicationContext());
+        mView.setCallback(mCallback);
+    }
+
+    @After
+    public void tearDown() {
+        mView.release();
+        EasyVideoPlayerConfig.setPlaybackEngineFactory(null);
+    }
+
+    @Test
+    public void prepareHandsTheSourceToTheEngine() throws InterruptedException {
+        FakePlaybackEngine engine = prepare();
+
+        assertEquals(1, mFactory.getCreatedCount());
+        assertEquals(SOURCE.toString(), engine.getDataSource());
+        assertEquals(1, engine.getPrepareCount());
+        assertTrue(mView.isPrepared());
+        assertEquals(60000, mView.getDuration());
+        assertEquals(1, mCallback.mPrepared);
+        assertFalse(mView.isPlaying());
+    }
+
+    @Test
+    public void autoPlayStartsOncePrepared() throws InterruptedException {
+        mView.setAutoPlay(true);
+        prepare();
+
+        assertTrue(mView.isPlaying());
+        assertEquals(1, mCallback.mStarted);
+    }
+
+    @Test
+    public void initialPositionIsSoughtOncePrepared() throws InterruptedException {
+        mView.setInitialPosition(12000);
+        FakePlaybackEngine engine = prepare();
+
+        assertEquals(1, engine.getSeekCount());
+        engine.completeSeek();
+        assertEquals(12000, mView.getCurrentPosition());
+    }
+
+    @Test
+    public void seeksInFlightCollapseIntoTheLatest() throws InterruptedException {
+        FakePlaybackEngine engine = prepare();
+
+        mView.seekTo(1000);
+        mView.seekTo(2000);
+        mView.seekTo(3000);
+        assertEquals(1, engine.getSeekCount());
+
+        engine.completeSeek();
+        assertEquals(2, engine.getSeekCount());
+        engine.completeSeek();
+        assertFalse(engine.isSeeking());
+        assertEquals(3000, mView.getCurrentPosition());
+    }
+
+    @Test
+    public void startWaitsForTheSeekInFlight() throws InterruptedException {
+        FakePlaybackEngine engine = prepare();
+
+        mView.seekTo(5000);
+        mView.start();
+        assertFalse(mView.isPlaying());
+
+        engine.completeSeek();
+        assertTrue(mView.isPlaying());
+        assertEquals(5000, mView.getCurrentPosition());
+    }
+
+    @Test
+    public void completionIsReportedOnce() throws InterruptedException {
+        mView.setAutoPlay(true);
+        FakePlaybackEngine engine = prepare();
+
+        engine.complete();
+        idleMainLooper();
+
+        assertEquals(1, mCallback.mCompleted);
+        assertFalse(mView.isPlaying());
+        assertEquals(FakePlaybackEngine.COMPLETED, engine.getState());
+    }
+
+    @Test
+    public void restartAfterCompletionPlaysFromTheStart() throws InterruptedException {
+        mView.setAutoPlay(true);
+        FakePlaybackEngine engine = prepare();
+        engine.complete();
+        idleMainLooper();
+
+        mView.restart();
+        engine.completeSeek();
+
+        assertTrue(mView.isPlaying());
+        assertEquals(0, mView.getCurrentPosition());
+    }
+
+    @Test
+    public void releaseReleasesTheEngine() throws InterruptedException {
+        FakePlaybackEngine engine = prepare();
+
+        mView.release();
+        engine.awaitState(FakePlaybackEngine.RELEASED, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void hiddenUiKeepsThePausedPlayerPrepared() throws InterruptedException {
+        FakePlaybackEngine engine = prepare();
+
+        // Sent on every press of Home, the player off screen must resume without preparing again
+        PlayerRegistry.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        PlayerRegistry.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertTrue(mView.isPrepared());
+        assertEquals(FakePlaybackEngine.PREPARED, engine.getState());
+        assertEquals(1, mFactory.getCreatedCount());
+    }
+
+    @Test
+    public void lowMemoryReleasesThePausedPlayer() throws InterruptedException {
+        mView.setInitialPosition(12000);
+        FakePlaybackEngine engine = prepare();
+        engine.completeSeek();
+
+        PlayerRegistry.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        engine.awaitState(FakePlaybackEngine.RELEASED, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertFalse(mView.isPrepared());
+        assertEquals(12000, mView.getCurrentPosition());
+    }
+
+    /**
+     * Sets the source, gives the view a surface and finishes the prepare once the prepare thread
+     * has dispatched it.
+     */
+    @NonNull
+    private FakePlaybackEngine prepare() throws InterruptedException {
+        mView.setSource(SOURCE);
+        mView.onSurfaceTextureAvailable(new SurfaceTexture(0), 640, 360);
+        FakePlaybackEngine engine = mFactory.last();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (engine.getState() != FakePlaybackEngine.PREPARING) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The prepare was not dispatched");
+            }
+            Thread.sleep(5);
+        }
+        // The pipeline results posted to the main thread
+        idleMainLooper();
+        engine.finishPrepare();
+        idleMainLooper();
+        return engine;
+    }
+
+    private static void idleMainLooper() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static class RecordingCallback extends EasyVideoCallback {
+
+        private int mPrepared;
+        private int mStarted;
+        private int mCompleted;
+
+        @Override
+        public void onPrepared(PlayerView player) {
+            mPrepared++;
+        }
+
+        @Override
+        public void onStarted(PlayerView player) {
+            mStarted++;
+        }
+
+        @Override
+        public void onCompletion(PlayerView player) {
+            mCompleted++;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Prepares HLS sources served by a local origin on {@link FakePlaybackEngine}s. The main looper is
+ * never run, the assertions are made on the engines.
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PreparePipelineTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private TestHttpServer mOrigin;
+    private PreparePipeline mPipeline;
+
+    @Before
+    public void setUp() throws IOException {
+        mOrigin = new TestHttpServer();
+        mOrigin.setResource("/hls/master.m3u8", "/hls/master.m3u8");
+        HttpCacheProxy.uninstall();
+        BandwidthMeter.get().reset();
+        EasyVideoPlayerConfig.setAdaptiveStreamingEnabled(true);
+        mPipeline = newPipeline();
+    }
+
+    @After
+    public void tearDown() {
+        mOrigin.stop();
+        BandwidthMeter.get().reset();
+    }
+
+    @Test
+    public void masterIsPassedThroughWithoutEstimate() throws InterruptedException {
+        FakePlaybackEngine engine = new FakePlaybackEngine();
+        prepare(mPipeline, engine, mOrigin.url("/hls/master.m3u8"));
+
+        engine.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // Too small to be measured, the player picks the variant
+        assertEquals(mOrigin.url("/hls/master.m3u8"), engine.getDataSource());
+        assertEquals(1, mOrigin.getRequestCount());
+        assertEquals(0, BandwidthMeter.get().getSampleCount());
+    }
+
+    @Test
+    public void masterDownloadSeedsTheEstimate() throws IOException, InterruptedException {
+        StringBuilder master = new StringBuilder("#EXTM3U\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=800000,RESOLUTION=640x360\nlow/index.m3u8\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=5000000,RESOLUTION=1280x720\nmid/index.m3u8");
+        while (master.length() < 64 * 1024) {
+            master.append("\n# padding to get the download measured");
+        }
+        mOrigin.setBody("/hls/large.m3u8", master.append('\n').toString());
+        FakePlaybackEngine engine = new FakePlaybackEngine();
+        prepare(mPipeline, engine, mOrigin.url("/hls/large.m3u8"));
+
+        engine.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, BandwidthMeter.get().getSampleCount());
+        assertNotEquals(mOrigin.url("/hls/large.m3u8"), engine.getDataSource());
+    }
+
+    @Test
+    public void variantIsSelectedFromTheEstimate() throws InterruptedException {
+        // 8 Mbps measured, the 5 Mbps variant fits in the three quarters kept
+        BandwidthMeter.get().onTransfer(1000000, 1000);
+        FakePlaybackEngine engine = new FakePlaybackEngine();
+        prepare(mPipeline, engine, mOrigin.url("/hls/master.m3u8"));
+
+        engine.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(mOrigin.url("/hls/mid/index.m3u8"), engine.getDataSource());
+    }
+
+    @Test
+    public void slowPlaylistDoesNotHoldTheOtherPrepares() throws InterruptedException {
+        BandwidthMeter.get().onTransfer(1000000, 1000);
+        CountDownLatch gate = new CountDownLatch(1);
+        mOrigin.hold("/hls/master.m3u8", gate);
+        FakePlaybackEngine hls = new FakePlaybackEngine();
+        FakePlaybackEngine local = new FakePlaybackEngine();
+
+        prepare(mPipeline, hls, mOrigin.url("/hls/master.m3u8"));
+        prepare(newPipeline(), local, "file:///sdcard/Movies/clip.mp4");
+        local.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(FakePlaybackEngine.IDLE, hls.getState());
+
+        gate.countDown();
+        hls.awaitPreparing(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(mOrigin.url("/hls/mid/index.m3u8"), hls.getDataSource());
+    }
+
+    @Test
+    public void releaseWhileDownloadingSkipsTheDispatch() throws InterruptedException {
+        BandwidthMeter.get().onTransfer(1000000, 1000);
+        CountDownLatch gate = new CountDownLatch(1);
+        mOrigin.hold("/hls/master.m3u8", gate);
+        FakePlaybackEngine engine = new FakePlaybackEngine();
+
+        prepare(mPipeline, engine, mOrigin.url("/hls/master.m3u8"));
+        awaitRequest();
+        mPipeline.release(engine);
+        engine.awaitState(FakePlaybackEngine.RELEASED, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        gate.countDown();
+
+        // Anything dispatched after the release would have thrown on the prepare thread
+        final CountDownLatch drained = new CountDownLatch(1);
+        Thread.sleep(100);
+        PreparePipeline.execute(new Runnable() {
+            @Override
+            public void run() {
+                drained.countDown();
+            }
+        });
+        drained.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(0, engine.getPrepareCount());
+    }
+
+    @NonNull
+    private static PreparePipeline newPipeline() {
+        return new PreparePipeline(ApplicationProvider.<Context>getApplicationContext(), new PreparePipeline.Listener() {
+            @Override
+            public void onSourceResolved(int generation, boolean buffered) {
+            }
+
+            @Override
+            public void onPrepareDispatched(int generation, @NonNull PrepareTimings timings) {
+            }
+
+            @Override
+            public void onPrepareFailed(int generation, @NonNull Exception e) {
+            }
+        });
+    }
+
+    private static void prepare(@NonNull PreparePipeline pipeline, @NonNull FakePlaybackEngine engine,
+                                @NonNull String source) {
+        pipeline.prepare(engine, null, Uri.parse(source), new PrepareTimings());
+    }
+
+    private void awaitRequest() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mOrigin.getRequestCount() == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The playlist was not requested");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.ravenfeld.easyvideoplayer.internal;
+
+import androidx.annotation.NonNull;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for a media origin on the loopback interface. Serves fixed bodies with single byte
+ * range support, can hold a response back, and counts the requests it received.
+ */
+class TestHttpServer {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> mBodies = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> mGates = new ConcurrentHashMap<>();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    TestHttpServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    void setBody(@NonNull String path, @NonNull byte[] body) {
+        mBodies.put(path, body);
+    }
+
+    void setBody(@NonNull String path, @NonNull String body) throws IOException {
+        setBody(path, body.getBytes("UTF-8"));
+    }
+
+    /**
+     * Serves the test resource {@code resource} at {@code path}.
+     */
+    void setResource(@NonNull String path, @NonNull String resource) throws IOException {
+        InputStream in = TestHttpServer.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing test resource " + resource);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            setBody(path, out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Holds the responses for {@code path} until {@code gate} opens, to stand for a slow origin.
+     */
+    void hold(@NonNull String path, @NonNull CountDownLatch gate) {
+        mGates.put(path, gate);
+    }
+
+    @NonNull
+    String url(@NonNull String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private void serve(@NonNull HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+        CountDownLatch gate = mGates.get(exchange.getRequestURI().getPath());
+        if (gate != null) {
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        byte[] body = mBodies.get(exchange.getRequestURI().getPath());
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        int start = 0;
+        int end = body.length - 1;
+        int code = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (matcher != null && matcher.matches()) {
+            start = Integer.parseInt(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) {
+                end = Math.min(end, Integer.parseInt(matcher.group(2)));
+            }
+            code = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, end - start + 1);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body, start, end - start + 1);
+        out.close();
+    }
+}
@@ -1,5 +1,6 @@
 package com.ravenfeld.easyvideoplayersample;
 
+import android.net.Uri;
 import android.os.Bundle;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -9,6 +10,9 @@ import androidx.fragment.app.FragmentStatePagerAdapter;
 import androidx.viewpager.widget.PagerAdapter;
 import androidx.viewpager.widget.ViewPager;
 
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayer;
+import com.ravenfeld.easyvideoplayer.EasyVideoPlayerConfig;
+
 
 public class ScreenSlidePagerActivity extends AppCompatActivity {
 
@@ -18,6 +22,8 @@ public class ScreenSlidePagerActivity extends AppCompatActivity {
             "http://techslides.com/demos/sample-videos/small.mp4"};
 
     private static final int NUM_PAGES = 3;
+    private static final long CACHE_SIZE = 100 * 1024 * 1024;
+    private static final long PREFETCH_SIZE = 512 * 1024;
 
 
     private ViewPager mPager;
@@ -33,6 +39,33 @@ public class ScreenSlidePagerActivity extends AppCompatActivity {
         mPager = (ViewPager) findViewById(R.id.pager);
         mPagerAdapter = new ScreenSlidePagerAdapter(getSupportFragmentManager());
         mPager.setAdapter(mPagerAdapter);
+
+        if (!EasyVideoPlayerConfig.isHttpCacheEnabled()) {
+            EasyVideoPlayerConfig.enableHttpCache(this, CACHE_SIZE);
+        }
+        mPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageSelected(int position) {
+                prefetchNeighbours(position);
+            }
+        });
+        prefetchNeighbours(mPager.getCurrentItem());
+    }
+
+    @Override
+    protected void onDestroy() {
+        EasyVideoPlayer.cancelAllPrefetches();
+        super.onDestroy();
+    }
+
+    private void prefetchNeighbours(int position) {
+        for (int i = 0; i < NUM_PAGES; i++) {
+            if (Math.abs(i - position) == 1) {
+                EasyVideoPlayer.prefetch(Uri.parse(URL[i]), PREFETCH_SIZE);
+            } else {
+                EasyVideoPlayer.cancelPrefetch(Uri.parse(URL[i]));
+            }
+        }
     }
 
     @Override